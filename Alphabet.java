@@ -1,5 +1,7 @@
 package enigma;
 
+import static enigma.EnigmaException.*;
+
 /** An alphabet of encodable characters.  Provides a mapping from characters
  *  to and from indices into the alphabet.
  *  @author P. N. Hilfinger
@@ -20,4 +22,32 @@ abstract class Alphabet {
      *  the alphabet. This is the inverse of toChar(). */
     abstract int toInt(char ch);
 
+    /** Returns true if the Unicode code point CODEPOINT is in this
+     *  alphabet. */
+    boolean containsCodePoint(int codePoint) {
+        return Character.isBmpCodePoint(codePoint)
+            && contains((char) codePoint);
+    }
+
+    /** Returns the code point of symbol number INDEX in the alphabet,
+     *  where 0 <= INDEX < size(). */
+    int toCodePoint(int index) {
+        return toChar(index);
+    }
+
+    /** Returns the index of the code point CODEPOINT, which must be in
+     *  the alphabet. This is the inverse of toCodePoint(). */
+    int toIndex(int codePoint) {
+        if (!Character.isBmpCodePoint(codePoint)) {
+            throw error("character out of range");
+        }
+        return toInt((char) codePoint);
+    }
+
+    /** Returns true iff every symbol of the alphabet is a single char, so
+     *  that toChar and toInt cover it. */
+    boolean bmp() {
+        return true;
+    }
+
 }
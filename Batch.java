@@ -0,0 +1,615 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** A batch of independent messages, each with its own machine settings,
+ *  converted together.  Rather than converting one message after
+ *  another, convert() lays the batch out as a structure of arrays (for
+ *  each slot, the rotor position and conversion tables of every message;
+ *  for each keypress, the input symbol of every message) and advances
+ *  every message through the rotor stack in lockstep.  Messages are
+ *  ordered by length so that the ones still running at any keypress are
+ *  a prefix of the batch.
+ *
+ *  Each symbol takes five table lookups instead of one per rotor in each
+ *  direction and two for the plugboard.  The plugboard is folded into
+ *  the tables of the rightmost rotor.  The reflector and the rotors
+ *  between it and the two rightmost rotors, which move at most once in
+ *  hundreds of keypresses, are merged into one core table per message.
+ *  Core tables are shared by all messages of a machine whose core rotors
+ *  are at the same positions, and one is built only when a message's
+ *  core rotors reach positions not seen before.
+ *  @author Areeb Khalfay
+ */
+class Batch {
+
+    /** An empty batch of messages for machines with NUMROTORS slots. */
+    Batch(int numRotors) {
+        _numRotors = numRotors;
+    }
+
+    /** An empty batch whose settings lines are read by MAIN, setting up
+     *  MACHINE, which was returned by MAIN.readConfig(). */
+    Batch(Main main, Machine machine) {
+        this(machine.numRotors());
+        _main = main;
+        _machine = machine;
+    }
+
+    /** Add MSG, to be converted by SPEC from STATE, which convert()
+     *  advances past it.  Returns the index of MSG in the batch. */
+    int add(MachineSpec spec, MachineState state, String msg) {
+        if (spec.numRotors() != _numRotors) {
+            throw error("a batch machine needs %d rotors", _numRotors);
+        }
+        _machines.add(spec);
+        _states.add(state);
+        _messages.add(msg);
+        return _messages.size() - 1;
+    }
+
+    /** Add MSG, to be converted with the machine set up by the settings
+     *  line SETTINGS, as read by Main.setUp.  Returns the index of MSG in
+     *  the batch. */
+    int add(String settings, String msg) {
+        if (_main == null) {
+            throw error("this batch cannot read settings lines");
+        }
+        if (!_initial.containsKey(settings)) {
+            _main.setUp(_machine, settings);
+            _specs.put(settings, _machine.spec());
+            _initial.put(settings, _machine.state());
+        }
+        return add(_specs.get(settings), _initial.get(settings).copy(), msg);
+    }
+
+    /** Return the number of messages in the batch. */
+    int size() {
+        return _messages.size();
+    }
+
+    /** Return the conversions of the messages of the batch, in the order
+     *  they were added, as Machine.convert(String) would convert them:
+     *  spaces are copied and do not advance the rotors.  The states given
+     *  to add() are left after their messages.  The symbols of every
+     *  alphabet must be single characters (see Alphabet.bmp). */
+    String[] convert() {
+        int n = _messages.size();
+        int[] letters = new int[n];
+        int[] start = read(letters);
+        int most = 0;
+        for (int count : letters) {
+            most = Math.max(most, count);
+        }
+        int[] order = order(letters, most);
+        lay(order, start);
+
+        for (int lo = 0; lo < n; lo += BLOCK) {
+            int hi = Math.min(n, lo + BLOCK);
+            int longest = letters[order[lo]];
+            int active = hi;
+            for (int t = 0; t < longest; t += 1) {
+                while (letters[order[active - 1]] <= t) {
+                    active -= 1;
+                }
+                step(lo, active);
+                path(t, lo, active);
+            }
+        }
+        return write(order);
+    }
+
+    /** Read the symbols of the messages into _symbols, those of message
+     *  K from index START[K] on, where START is the returned array, and
+     *  set LETTERS[K] to their number. */
+    private int[] read(int[] letters) {
+        int n = _messages.size();
+        int total = 0;
+        for (String msg : _messages) {
+            total += msg.length();
+        }
+        _symbols = new int[total];
+        int[] start = new int[n];
+        char[] chars = new char[0];
+        int at = 0;
+        for (int k = 0; k < n; k += 1) {
+            String msg = _messages.get(k);
+            int[] indices = indices(_machines.get(k).alphabet());
+            int len = msg.length();
+            if (len > chars.length) {
+                chars = new char[Math.max(len, 2 * chars.length)];
+            }
+            msg.getChars(0, len, chars, 0);
+            start[k] = at;
+            for (int i = 0; i < len; i += 1) {
+                char ch = chars[i];
+                if (ch != ' ') {
+                    int c = ch < indices.length ? indices[ch] : -1;
+                    if (c < 0) {
+                        throw error("character out of range");
+                    }
+                    _symbols[at] = c;
+                    at += 1;
+                }
+            }
+            letters[k] = at - start[k];
+        }
+        return start;
+    }
+
+    /** Return the conversions of the messages, whose symbols are in the
+     *  lanes given by ORDER, and leave their states after them. */
+    private String[] write(int[] order) {
+        int n = order.length;
+        int[] lanes = new int[n];
+        for (int lane = 0; lane < n; lane += 1) {
+            lanes[order[lane]] = lane;
+        }
+        String[] result = new String[n];
+        Alphabet alphabet = null;
+        char[] chars = null;
+        for (int k = 0; k < n; k += 1) {
+            int lane = lanes[k];
+            if (_machines.get(k).alphabet() != alphabet) {
+                alphabet = _machines.get(k).alphabet();
+                chars = _chars.get(alphabet);
+            }
+            char[] out = _messages.get(k).toCharArray();
+            int at = _at[lane];
+            for (int i = 0; i < out.length; i += 1) {
+                if (out[i] != ' ') {
+                    out[i] = chars[_symbols[at]];
+                    at += 1;
+                }
+            }
+            result[k] = new String(out);
+            int[] positions = _states.get(k).positions();
+            for (int slot = 0; slot < _numRotors; slot += 1) {
+                positions[slot] = _pos[slot][lane];
+            }
+        }
+        return result;
+    }
+
+    /** Return the index in ALPHABET of each character, or -1 for those
+     *  not in it, recording its characters in _chars. */
+    private int[] indices(Alphabet alphabet) {
+        if (alphabet == _alphabet) {
+            return _indices;
+        }
+        int[] indices = _indexTables.get(alphabet);
+        if (indices == null) {
+            if (!alphabet.bmp()) {
+                throw error("batch alphabets must be single characters");
+            }
+            char[] chars = new char[alphabet.size()];
+            char last = 0;
+            for (int c = 0; c < chars.length; c += 1) {
+                chars[c] = alphabet.toChar(c);
+                last = (char) Math.max(last, chars[c]);
+            }
+            indices = new int[last + 1];
+            Arrays.fill(indices, -1);
+            for (int c = 0; c < chars.length; c += 1) {
+                indices[chars[c]] = c;
+            }
+            _indexTables.put(alphabet, indices);
+            _chars.put(alphabet, chars);
+        }
+        _alphabet = alphabet;
+        _indices = indices;
+        return indices;
+    }
+
+    /** Return the indices of messages with LETTERS[K] letters each, at
+     *  most MOST, from most letters to fewest. */
+    private static int[] order(int[] letters, int most) {
+        int[] first = new int[most + 2];
+        for (int count : letters) {
+            first[most - count + 1] += 1;
+        }
+        for (int c = 1; c < first.length; c += 1) {
+            first[c] += first[c - 1];
+        }
+        int[] order = new int[letters.length];
+        for (int k = 0; k < letters.length; k += 1) {
+            order[first[most - letters[k]]++] = k;
+        }
+        return order;
+    }
+
+    /** Set up my arrays for the messages in ORDER, message ORDER[L] going
+     *  in lane L, the symbols of message K starting at _symbols[START[K]].
+     */
+    private void lay(int[] order, int[] start) {
+        int n = order.length;
+        int r = _numRotors;
+        _size = n == 0 ? 0 : _machines.get(0).alphabet().size();
+        _first = Math.max(1, r - 2);
+        _pos = new int[r][n];
+        _notches = new int[r][n];
+        _ratchets = new int[r][n];
+        _rightForward = new int[n];
+        _rightBackward = new int[n];
+        _middleForward = new int[n];
+        _middleBackward = new int[n];
+        _template = new int[n];
+        _core = new int[n];
+        _dirty = new int[2 * r * n];
+        _templates.clear();
+        IdentityHashMap<Object, Integer> offsets = new IdentityHashMap<>();
+        IdentityHashMap<MachineSpec, int[]> layouts = new IdentityHashMap<>();
+        ArrayList<int[]> tables = new ArrayList<>();
+        ArrayList<boolean[]> notches = new ArrayList<>();
+        for (int lane = 0; lane < n; lane += 1) {
+            int k = order[lane];
+            MachineSpec spec = _machines.get(k);
+            int[] layout = layouts.get(spec);
+            if (layout == null) {
+                if (spec.alphabet().size() != _size) {
+                    throw error("batch machines must share an alphabet size");
+                }
+                if (!layouts.isEmpty() && spec.numPawls() != _numPawls) {
+                    throw error("batch machines must have the same pawls");
+                }
+                _numPawls = spec.numPawls();
+                layout = layout(spec, offsets, tables, notches);
+                layouts.put(spec, layout);
+            }
+            int[] positions = _states.get(k).positions();
+            for (int slot = 0; slot < r; slot += 1) {
+                _pos[slot][lane] = positions[slot];
+                _notches[slot][lane] = layout[slot];
+                _ratchets[slot][lane] = layout[r + slot];
+            }
+            _rightForward[lane] = layout[2 * r];
+            _rightBackward[lane] = layout[2 * r + 1];
+            _middleForward[lane] = layout[2 * r + 2];
+            _middleBackward[lane] = layout[2 * r + 3];
+            _template[lane] = layout[2 * r + 4];
+        }
+        _tables = new int[tables.size() * _size * _size];
+        for (int[] table : tables) {
+            int off = offsets.get(table);
+            System.arraycopy(table, 0, _tables, off, table.length);
+        }
+        _notchTable = new boolean[notches.size() * _size];
+        for (boolean[] table : notches) {
+            int off = offsets.get(table);
+            System.arraycopy(table, 0, _notchTable, off, table.length);
+        }
+        long keys = _templates.size();
+        for (int slot = 0; slot < _first && keys <= MAX_KEYS; slot += 1) {
+            keys *= _size;
+        }
+        if (keys <= MAX_KEYS) {
+            _coreOffsets = new int[(int) keys];
+            Arrays.fill(_coreOffsets, -1);
+            _cores = new int[16 * _size];
+        } else {
+            _coreOffsets = null;
+            _cores = new int[n * _size];
+        }
+        _coreCount = 0;
+        for (int lane = 0; lane < n; lane += 1) {
+            core(lane);
+        }
+
+        _at = new int[n];
+        for (int lane = 0; lane < n; lane += 1) {
+            _at[lane] = start[order[lane]];
+        }
+    }
+
+    /** Return the layout of SPEC in the pools of tables, adding its
+     *  tables to TABLES and NOTCHES, with their offsets in OFFSETS, as
+     *  needed: the offsets of the notch tables of its slots, the ratchet
+     *  (1 or 0) of each slot, the offsets of its rightmost rotor's forward
+     *  and backward tables with the plugboard folded in, those of the
+     *  tables of the rotor in slot numRotors - 2, if it is not in the core,
+     *  and its index in _templates. */
+    private int[] layout(MachineSpec spec,
+                         IdentityHashMap<Object, Integer> offsets,
+                         List<int[]> tables, List<boolean[]> notches) {
+        int r = _numRotors, right = r - 1;
+        Stepping stepping = spec.stepping();
+        int[] layout = new int[2 * r + 5];
+        for (int slot = 0; slot < r; slot += 1) {
+            layout[slot] = offset(stepping.notches(slot), offsets, notches);
+            layout[r + slot] = stepping.rotates(slot) ? 1 : 0;
+        }
+        int[] forward = spec.forwardTable(right);
+        int[] backward = spec.backwardTable(right);
+        int[] plugboard = spec.plugboardTable();
+        if (plugboard != null) {
+            int[] plugged = new int[forward.length];
+            int[] unplugged = new int[backward.length];
+            for (int i = 0; i < forward.length; i += 1) {
+                int base = i - i % _size;
+                plugged[i] = forward[base + plugboard[i - base]];
+                unplugged[i] = plugboard[backward[i]];
+            }
+            forward = plugged;
+            backward = unplugged;
+        }
+        layout[2 * r] = offset(forward, offsets, tables);
+        layout[2 * r + 1] = offset(backward, offsets, tables);
+        if (_first < right) {
+            layout[2 * r + 2] =
+                offset(spec.forwardTable(_first), offsets, tables);
+            layout[2 * r + 3] =
+                offset(spec.backwardTable(_first), offsets, tables);
+        }
+        layout[2 * r + 4] = _templates.size();
+        _templates.add(spec);
+        return layout;
+    }
+
+    /** Set the core table of LANE to the one for its template and the
+     *  current positions of its core rotors, building it if need be. */
+    private void core(int lane) {
+        if (_coreOffsets == null) {
+            buildCore(lane, lane * _size);
+            _core[lane] = lane * _size;
+            return;
+        }
+        int key = _template[lane];
+        for (int slot = 0; slot < _first; slot += 1) {
+            key = key * _size + _pos[slot][lane];
+        }
+        int offset = _coreOffsets[key];
+        if (offset < 0) {
+            offset = _coreCount * _size;
+            if (offset + _size > _cores.length) {
+                _cores = Arrays.copyOf(_cores, 2 * _cores.length);
+            }
+            buildCore(lane, offset);
+            _coreOffsets[key] = offset;
+            _coreCount += 1;
+        }
+        _core[lane] = offset;
+    }
+
+    /** Write the core table of LANE at its current positions into _cores
+     *  from OFFSET on: for each symbol entering the core from slot
+     *  _first, the symbol leaving it back into that slot. */
+    private void buildCore(int lane, int offset) {
+        MachineSpec spec = _templates.get(_template[lane]);
+        for (int c = 0; c < _size; c += 1) {
+            int p = c;
+            for (int slot = _first - 1; slot >= 0; slot -= 1) {
+                p = spec.forwardTable(slot)[_pos[slot][lane] * _size + p];
+            }
+            for (int slot = 1; slot < _first; slot += 1) {
+                p = spec.backwardTable(slot)[_pos[slot][lane] * _size + p];
+            }
+            _cores[offset + c] = p;
+        }
+    }
+
+    /** Return the offset of TABLE in the pool of tables in TABLES, adding
+     *  it to the end if it has none yet in OFFSETS.  Each table of TABLES
+     *  is given room for alphabet size squared entries. */
+    private <T> int offset(T table, IdentityHashMap<Object, Integer> offsets,
+                           List<T> tables) {
+        Integer offset = offsets.get(table);
+        if (offset == null) {
+            int room = table instanceof int[] ? _size * _size : _size;
+            offset = tables.size() * room;
+            offsets.put(table, offset);
+            tables.add(table);
+        }
+        return offset;
+    }
+
+    /** Advance the rotors of lanes LO to HI-1 but the rightmost by one
+     *  keypress, as Stepping.step does for one machine, and update the
+     *  core tables of lanes whose core rotors moved.  The rightmost
+     *  rotors are left to path(). */
+    private void step(int lo, int hi) {
+        boolean[] notch = _notchTable;
+        int[] dirtyLanes = _dirty;
+        int size = _size;
+        int dirty = 0;
+        for (int i = _numRotors - 1; i > Math.max(_numPawls - 1, 0); i -= 1) {
+            int[] here = _pos[i], left = _pos[i - 1];
+            int[] notches = _notches[i], leftNotches = _notches[i - 1];
+            int[] ratchets = _ratchets[i - 1];
+            int[] far = i > 1 ? _pos[i - 2] : null;
+            int[] farRatchets = i > 1 ? _ratchets[i - 2] : null;
+            boolean leftCore = i - 1 < _first;
+            boolean farCore = far != null && i - 2 < _first;
+            for (int lane = lo; lane < hi; lane += 1) {
+                if (notch[notches[lane] + here[lane]]) {
+                    left[lane] = advance(left[lane], ratchets[lane], size);
+                    if (leftCore) {
+                        dirtyLanes[dirty++] = lane;
+                    }
+                }
+                if (notch[leftNotches[lane] + left[lane]]) {
+                    left[lane] = advance(left[lane], ratchets[lane], size);
+                    if (far != null) {
+                        far[lane] = advance(far[lane], farRatchets[lane], size);
+                    }
+                    if (leftCore || farCore) {
+                        dirtyLanes[dirty++] = lane;
+                    }
+                }
+            }
+        }
+        for (int d = 0; d < dirty; d += 1) {
+            core(dirtyLanes[d]);
+        }
+    }
+
+    /** Return the position after POSN advanced by MOVE, 0 or 1, on a
+     *  rotor with SIZE positions. */
+    private static int advance(int posn, int move, int size) {
+        int next = posn + move;
+        return next == size ? 0 : next;
+    }
+
+    /** Advance the rightmost rotor of each of lanes LO to HI-1 and
+     *  replace symbol T of the lane with its signal path at the lane's
+     *  new rotor positions. */
+    private void path(int t, int lo, int hi) {
+        int[] tables = _tables, cores = _cores, symbols = _symbols;
+        int[] at = _at;
+        int[] rightForward = _rightForward, rightBackward = _rightBackward;
+        int[] core = _core;
+        int[] right = _pos[_numRotors - 1];
+        int[] ratchets = _ratchets[_numRotors - 1];
+        int size = _size;
+        if (_first == _numRotors - 1) {
+            for (int lane = lo; lane < hi; lane += 1) {
+                int posn = advance(right[lane], ratchets[lane], size);
+                right[lane] = posn;
+                int i = at[lane] + t, r = posn * size;
+                int p = tables[rightForward[lane] + r + symbols[i]];
+                p = cores[core[lane] + p];
+                symbols[i] = tables[rightBackward[lane] + r + p];
+            }
+            return;
+        }
+        int[] middleForward = _middleForward;
+        int[] middleBackward = _middleBackward;
+        int[] middle = _pos[_first];
+        for (int lane = lo; lane < hi; lane += 1) {
+            int posn = advance(right[lane], ratchets[lane], size);
+            right[lane] = posn;
+            int i = at[lane] + t;
+            int r = posn * size, m = middle[lane] * size;
+            int p = tables[rightForward[lane] + r + symbols[i]];
+            p = tables[middleForward[lane] + m + p];
+            p = cores[core[lane] + p];
+            p = tables[middleBackward[lane] + m + p];
+            symbols[i] = tables[rightBackward[lane] + r + p];
+        }
+    }
+
+    /** Number of lanes advanced together through a whole message, few
+     *  enough that their positions and symbols stay in the cache. */
+    private static final int BLOCK = 256;
+
+    /** Largest number of entries in _coreOffsets. */
+    private static final int MAX_KEYS = 1 << 20;
+
+    /** Number of rotor slots of every machine. */
+    private final int _numRotors;
+
+    /** Reads settings lines, or null. */
+    private Main _main;
+
+    /** Machine on which settings lines are read, or null. */
+    private Machine _machine;
+
+    /** Spec of each message. */
+    private final List<MachineSpec> _machines = new ArrayList<>();
+
+    /** State of each message. */
+    private final List<MachineState> _states = new ArrayList<>();
+
+    /** The messages. */
+    private final List<String> _messages = new ArrayList<>();
+
+    /** Spec of each settings line read. */
+    private final HashMap<String, MachineSpec> _specs = new HashMap<>();
+
+    /** Start state of each settings line read. */
+    private final HashMap<String, MachineState> _initial = new HashMap<>();
+
+    /** Size of the common alphabet. */
+    private int _size;
+
+    /** Number of pawls of every machine. */
+    private int _numPawls;
+
+    /** Conversion tables of every lane, one after another. */
+    private int[] _tables;
+
+    /** Notch tables of every lane, one after another. */
+    private boolean[] _notchTable;
+
+    /** First slot not in the core: the core is slots 0 to _first - 1. */
+    private int _first;
+
+    /** _pos[S][L] is the position of the rotor in slot S of lane L. */
+    private int[][] _pos;
+
+    /** _notches[S][L] is the offset in _notchTable of the notch table of
+     *  slot S of lane L. */
+    private int[][] _notches;
+
+    /** _ratchets[S][L] is 1 if slot S of lane L has a ratchet, else 0. */
+    private int[][] _ratchets;
+
+    /** Offset in _tables of the forward table of the rightmost rotor of
+     *  each lane, with its plugboard applied first. */
+    private int[] _rightForward;
+
+    /** Offset in _tables of the backward table of the rightmost rotor of
+     *  each lane, with its plugboard applied last. */
+    private int[] _rightBackward;
+
+    /** Offset in _tables of the forward table of slot _first of each
+     *  lane, if it is not the rightmost slot. */
+    private int[] _middleForward;
+
+    /** Offset in _tables of the backward table of slot _first of each
+     *  lane, if it is not the rightmost slot. */
+    private int[] _middleBackward;
+
+    /** Index in _templates of the spec of each lane. */
+    private int[] _template;
+
+    /** The distinct specs of the lanes. */
+    private final List<MachineSpec> _templates = new ArrayList<>();
+
+    /** Offset in _cores of the core table of each lane. */
+    private int[] _core;
+
+    /** Core tables, one after another. */
+    private int[] _cores;
+
+    /** Number of core tables in _cores, if they are shared. */
+    private int _coreCount;
+
+    /** Offset in _cores of the core table of each template and set of
+     *  core rotor positions, or -1 if it has not been built, indexed by
+     *  the template's index followed by those positions as digits in
+     *  base alphabet size; null if there would be more than MAX_KEYS
+     *  entries, in which case each lane has its own core table. */
+    private int[] _coreOffsets;
+
+    /** Lanes whose core rotors moved in the current keypress, each
+     *  listed at most twice per slot. */
+    private int[] _dirty;
+
+    /** Symbol T of lane L is _symbols[_at[L] + T]: an input symbol
+     *  until converted, then its output. */
+    private int[] _symbols;
+
+    /** Index in _symbols of the first symbol of each lane. */
+    private int[] _at;
+
+    /** Index of each character in each alphabet of the batch, or -1. */
+    private final IdentityHashMap<Alphabet, int[]> _indexTables =
+        new IdentityHashMap<>();
+
+    /** Characters of each alphabet of the batch, by index. */
+    private final IdentityHashMap<Alphabet, char[]> _chars =
+        new IdentityHashMap<>();
+
+    /** The alphabet last looked up in _indexTables. */
+    private Alphabet _alphabet;
+
+    /** The entry of _alphabet in _indexTables. */
+    private int[] _indices;
+
+}
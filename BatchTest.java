@@ -0,0 +1,126 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static enigma.MachineTest.*;
+import static enigma.TestUtils.UPPER;
+
+/** The suite of all JUnit tests for the Batch class.
+ *  @author Areeb Khalfay
+ */
+public class BatchTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Rotor orders used for mixed batches. */
+    private static final String[][] ORDERS = {
+        { "B", "Beta", "III", "IV", "I" },
+        { "C", "Gamma", "VI", "VII", "VIII" },
+        { "B", "Gamma", "II", "V", "III" },
+    };
+
+    /** Plugboards used for mixed batches; null for none. */
+    private static final String[] PLUGBOARDS = {
+        PLUGBOARD, null, "(AZ) (QM)",
+    };
+
+    @Test
+    public void checkMixedBatch() {
+        Random random = new Random(23);
+        Batch batch = new Batch(5);
+        int n = 300;
+        String[] msgs = new String[n];
+        String[] expected = new String[n];
+        Machine[] machines = new Machine[n];
+        MachineState[] states = new MachineState[n];
+        for (int k = 0; k < n; k += 1) {
+            StringBuilder setting = new StringBuilder();
+            for (int i = 0; i < 4; i += 1) {
+                setting.append((char) ('A' + random.nextInt(26)));
+            }
+            int kind = random.nextInt(ORDERS.length);
+            msgs[k] = randomMessage(random.nextInt(120), k);
+            Machine mach = navalMachine(ORDERS[kind], setting.toString(),
+                                        PLUGBOARDS[kind]);
+            states[k] = mach.state();
+            assertEquals(k, batch.add(mach.spec(), states[k], msgs[k]));
+            expected[k] = mach.convert(msgs[k]);
+            machines[k] = mach;
+        }
+        assertEquals(n, batch.size());
+        String[] result = batch.convert();
+        for (int k = 0; k < n; k += 1) {
+            assertEquals(expected[k], result[k]);
+            assertEquals(machines[k].state(), states[k]);
+        }
+    }
+
+    @Test
+    public void checkSettingsLines() throws IOException {
+        Path config = Files.createTempFile("enigma", ".conf");
+        Files.write(config, MainTest.CONFIG.getBytes(StandardCharsets.UTF_8));
+        Main main = new Main(config.toString());
+        Batch batch = new Batch(main, main.readConfig());
+        String settings = "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)";
+        batch.add(settings, "FROM HIS SHOULDER HIAWATHA");
+        batch.add("* C Gamma I II III AAAA", "");
+        batch.add(settings, "TOOK THE CAMERA OF ROSEWOOD");
+        String[] result = batch.convert();
+        assertEquals("QVPQ SOK OILPUBKJ ZPISFXDW", result[0]);
+        assertEquals("", result[1]);
+        Machine mach = navalMachine(ROTORS, "AXLE", PLUGBOARD);
+        assertEquals(mach.convert("TOOK THE CAMERA OF ROSEWOOD"),
+                     result[2]);
+    }
+
+    @Test
+    public void checkDeepMachines() {
+        String[] rotors = { "B", "I", "II", "III", "IV", "V", "VI", "VII" };
+        Batch batch = new Batch(rotors.length);
+        Random random = new Random(29);
+        int n = 20;
+        String[] expected = new String[n];
+        for (int k = 0; k < n; k += 1) {
+            Machine mach = new Machine(UPPER, rotors.length,
+                                       rotors.length - 1,
+                                       navalRotors(NOTCHES));
+            mach.insertRotors(rotors);
+            StringBuilder setting = new StringBuilder();
+            for (int i = 1; i < rotors.length; i += 1) {
+                setting.append((char) ('A' + random.nextInt(26)));
+            }
+            mach.setRotors(setting.toString());
+            String msg = randomMessage(2000, k);
+            batch.add(mach.spec(), mach.state(), msg);
+            expected[k] = mach.convert(msg);
+        }
+        assertArrayEquals(expected, batch.convert());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkBadCharacter() {
+        Machine mach = navalMachine(ROTORS, "AXLE", null);
+        Batch batch = new Batch(5);
+        batch.add(mach.spec(), mach.state(), "HELLO");
+        batch.add(mach.spec(), mach.state(), "HELLO 1");
+        batch.convert();
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkWrongRotorCount() {
+        Machine mach = navalMachine(ROTORS, "AXLE", null);
+        new Batch(4).add(mach.spec(), mach.state(), "HELLO");
+    }
+
+}
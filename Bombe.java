@@ -0,0 +1,440 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+
+import static enigma.EnigmaException.*;
+
+/** A crib attack in the manner of the Turing-Welchman Bombe.  Given a
+ *  crib (plaintext believed to lie at a known place in a message) and
+ *  the ciphertext there, a Bombe tries every rotor order and every start
+ *  position of the rotors of a library, and reports the keys consistent
+ *  with the crib.
+ *
+ *  The crib and ciphertext letters form a menu: a graph whose nodes are
+ *  letters and which has an edge between the Ith crib and ciphertext
+ *  letters, labelled with the scrambler (the machine without its
+ *  plugboard) I + 1 keypresses after the start position.  At each start
+ *  position, each hypothesis for the plug of the menu's best-connected
+ *  letter is followed through the menu and through the symmetry of the
+ *  plugboard (the diagonal board) until it implies two different plugs
+ *  for some letter, in which case it is rejected, or it stops growing,
+ *  in which case the position is a stop.  Scrambler outputs come from
+ *  the rotors' precomputed tables and are only computed when first
+ *  needed.
+ *  @author Areeb Khalfay
+ */
+class Bombe {
+
+    /** A Bombe for the rotors of LIBRARY, trying the rotor orders in
+     *  ORDERS (each naming the rotor of every slot, reflector first), for
+     *  a message whose letters starting at OFFSET are CIPHER and encrypt
+     *  CRIB.  CRIB and CIPHER are strings of letters of the library's
+     *  alphabet of the same length. */
+    Bombe(RotorLibrary library, List<String[]> orders, String crib,
+          String cipher, long offset) {
+        if (crib.length() != cipher.length() || crib.isEmpty()) {
+            throw error("crib and ciphertext must have the same length");
+        }
+        if (offset < 0) {
+            throw error("negative crib offset");
+        }
+        _library = library;
+        _orders = new ArrayList<>(orders);
+        _alphabet = library.alphabet();
+        _size = _alphabet.size();
+        _offset = offset;
+        _length = crib.length();
+        _plain = new int[_length];
+        _cipher = new int[_length];
+        for (int i = 0; i < _length; i += 1) {
+            _plain[i] = _alphabet.toInt(crib.charAt(i));
+            _cipher[i] = _alphabet.toInt(cipher.charAt(i));
+            if (_plain[i] == _cipher[i]) {
+                throw error("crib letter %d encrypts to itself", i);
+            }
+        }
+        buildMenu();
+        int positions = 1;
+        for (int slot = 1; slot < library.numRotors(); slot += 1) {
+            positions = Math.multiplyExact(positions, _size);
+        }
+        _positions = positions;
+    }
+
+    /** A Bombe trying every rotor order of LIBRARY (see rotorOrders). */
+    Bombe(RotorLibrary library, String crib, String cipher, long offset) {
+        this(library, rotorOrders(library), crib, cipher, offset);
+    }
+
+    /** Return every rotor order of LIBRARY: a reflector, then a distinct
+     *  non-moving rotor for each slot without a pawl, then a distinct
+     *  moving rotor for each slot with one. */
+    static List<String[]> rotorOrders(RotorLibrary library) {
+        List<String[]> orders = new ArrayList<>();
+        addOrders(library, new String[library.numRotors()], 0, orders);
+        return orders;
+    }
+
+    /** Add to ORDERS every completion of ORDER, whose slots before SLOT
+     *  are filled, with the rotors of LIBRARY. */
+    private static void addOrders(RotorLibrary library, String[] order,
+                                  int slot, List<String[]> orders) {
+        if (slot == order.length) {
+            orders.add(order.clone());
+            return;
+        }
+        int firstMoving = library.numRotors() - library.numPawls();
+        for (Rotor rotor : library.rotors()) {
+            boolean fits;
+            if (slot == 0) {
+                fits = rotor.reflecting();
+            } else if (slot < firstMoving) {
+                fits = !rotor.reflecting() && !rotor.rotates();
+            } else {
+                fits = rotor.rotates();
+            }
+            if (fits && !Arrays.asList(order).subList(0, slot)
+                .contains(rotor.name())) {
+                order[slot] = rotor.name();
+                addOrders(library, order, slot + 1, orders);
+                order[slot] = null;
+            }
+        }
+    }
+
+    /** Return the number of states (rotor orders times start positions)
+     *  I try. */
+    long total() {
+        return (long) _orders.size() * _positions;
+    }
+
+    /** Return the number of states tried so far. */
+    long tested() {
+        return _tested.sum();
+    }
+
+    /** Return the number of states tried per second since search()
+     *  started, or 0 if it has not. */
+    double statesPerSecond() {
+        long started = _started;
+        if (started == 0) {
+            return 0;
+        }
+        long end = _finished != 0 ? _finished : System.nanoTime();
+        return _tested.sum() * 1e9 / Math.max(1, end - started);
+    }
+
+    /** Return a one-line report of my progress. */
+    String report() {
+        return String.format("tested %d of %d states (%.0f states/s),"
+                             + " %d stops", tested(), total(),
+                             statesPerSecond(), _stops.size());
+    }
+
+    /** Return the stops found at every rotor order and start position,
+     *  searching on the common ForkJoinPool. */
+    List<Stop> search() {
+        return search(ForkJoinPool.commonPool());
+    }
+
+    /** Return the stops found at every rotor order and start position,
+     *  searching on POOL. */
+    List<Stop> search(ForkJoinPool pool) {
+        _stops.clear();
+        _tested.reset();
+        _started = System.nanoTime();
+        _finished = 0;
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        int share = _positions / _size;
+        for (String[] order : _orders) {
+            MachineSpec spec = _library.spec(order, null);
+            for (int first = 0; first < _size; first += 1) {
+                final int from = first * share;
+                tasks.add(pool.submit(
+                    () -> new Worker(spec).run(from, from + share)));
+            }
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+        _finished = System.nanoTime();
+        synchronized (_stops) {
+            return new ArrayList<>(_stops);
+        }
+    }
+
+    /** A key consistent with the crib. */
+    static class Stop {
+
+        /** A stop with the rotors ORDER at start positions SETTING and the
+         *  plugboard pairs PLUGS deduced from the menu. */
+        Stop(String[] order, String setting, String plugs) {
+            _order = order;
+            _setting = setting;
+            _plugs = plugs;
+        }
+
+        /** Return the names of my rotors, reflector first. */
+        String[] order() {
+            return _order.clone();
+        }
+
+        /** Return the stop with the rotors of SPEC at START and the
+         *  plugs PLUG, PLUG[C] being the letter plugged to C, or a
+         *  negative number if unknown. */
+        static Stop of(MachineSpec spec, int[] start, int[] plug) {
+            Alphabet alphabet = spec.alphabet();
+            String[] order = new String[start.length];
+            StringBuilder setting = new StringBuilder();
+            for (int slot = 0; slot < start.length; slot += 1) {
+                order[slot] = spec.rotorName(slot);
+                if (slot > 0) {
+                    setting.append(alphabet.toChar(start[slot]));
+                }
+            }
+            StringBuilder plugs = new StringBuilder();
+            for (int c = 0; c < plug.length; c += 1) {
+                if (plug[c] > c) {
+                    if (plugs.length() > 0) {
+                        plugs.append(' ');
+                    }
+                    plugs.append('(').append(alphabet.toChar(c))
+                        .append(alphabet.toChar(plug[c])).append(')');
+                }
+            }
+            return new Stop(order, setting.toString(), plugs.toString());
+        }
+
+        /** Return my start positions, as in a settings line. */
+        String setting() {
+            return _setting;
+        }
+
+        /** Return my deduced plugboard pairs, as in a settings line. */
+        String plugs() {
+            return _plugs;
+        }
+
+        /** Return me as a settings line, as read by Main.setUp. */
+        @Override
+        public String toString() {
+            String line = "* " + String.join(" ", _order) + " " + _setting;
+            return _plugs.isEmpty() ? line : line + " " + _plugs;
+        }
+
+        /** Rotor names, reflector first. */
+        private final String[] _order;
+
+        /** Start positions. */
+        private final String _setting;
+
+        /** Deduced plugboard pairs. */
+        private final String _plugs;
+    }
+
+    /** Record the menu edges of each letter, the letter whose plug is
+     *  guessed, and the letters of the menu's cycles. */
+    private void buildMenu() {
+        int[] degree = new int[_size];
+        for (int i = 0; i < _length; i += 1) {
+            degree[_plain[i]] += 1;
+            degree[_cipher[i]] += 1;
+        }
+        _edges = new int[_size][];
+        _others = new int[_size][];
+        for (int c = 0; c < _size; c += 1) {
+            _edges[c] = new int[degree[c]];
+            _others[c] = new int[degree[c]];
+        }
+        int[] filled = new int[_size];
+        for (int i = 0; i < _length; i += 1) {
+            addEdge(_plain[i], _cipher[i], i, filled);
+            addEdge(_cipher[i], _plain[i], i, filled);
+        }
+        _hub = 0;
+        for (int c = 1; c < _size; c += 1) {
+            if (degree[c] > degree[_hub]) {
+                _hub = c;
+            }
+        }
+    }
+
+    /** Record an edge labelled I from letter FROM to letter TO, FILLED
+     *  counting the edges already recorded for each letter. */
+    private void addEdge(int from, int to, int i, int[] filled) {
+        _edges[from][filled[from]] = i;
+        _others[from][filled[from]] = to;
+        filled[from] += 1;
+    }
+
+    /** The search of one range of start positions at one rotor order. */
+    private class Worker {
+
+        /** A worker for the rotor order of SPEC. */
+        Worker(MachineSpec spec) {
+            _spec = spec;
+            _states = new int[_length][spec.numRotors()];
+            _scrambler = new int[_length * _size];
+            _plug = new int[_size];
+            _queue = new int[2 * (1 + _size + 2 * _length)];
+        }
+
+        /** Try the start positions numbered FROM to TO - 1. */
+        void run(int from, int to) {
+            int[] start = new int[_spec.numRotors()];
+            for (int index = from; index < to; index += 1) {
+                int rest = index;
+                for (int slot = start.length - 1; slot > 0; slot -= 1) {
+                    start[slot] = rest % _size;
+                    rest /= _size;
+                }
+                test(start);
+                _tested.increment();
+            }
+        }
+
+        /** Try the start position START, recording any stops. */
+        private void test(int[] start) {
+            int[] positions = start.clone();
+            _spec.stepping().step(positions, _offset);
+            for (int i = 0; i < _length; i += 1) {
+                _spec.stepping().step(positions);
+                System.arraycopy(positions, 0, _states[i], 0,
+                                 positions.length);
+            }
+            Arrays.fill(_scrambler, -1);
+            for (int guess = 0; guess < _size; guess += 1) {
+                if (consistent(guess)) {
+                    record(start);
+                }
+            }
+        }
+
+        /** Return true iff the hypothesis that the hub letter is plugged
+         *  to GUESS implies no contradiction, leaving the plugs it implies
+         *  in _plug. */
+        private boolean consistent(int guess) {
+            Arrays.fill(_plug, -1);
+            int head = 0, tail = 0;
+            _queue[tail++] = _hub;
+            _queue[tail++] = guess;
+            while (head < tail) {
+                int letter = _queue[head++];
+                int value = _queue[head++];
+                int known = _plug[letter];
+                if (known == value) {
+                    continue;
+                } else if (known >= 0) {
+                    return false;
+                }
+                _plug[letter] = value;
+                if (letter != value) {
+                    _queue[tail++] = value;
+                    _queue[tail++] = letter;
+                }
+                int[] edges = _edges[letter];
+                for (int e = 0; e < edges.length; e += 1) {
+                    int other = _others[letter][e];
+                    int out = scramble(edges[e], value);
+                    if (_plug[other] < 0) {
+                        _queue[tail++] = other;
+                        _queue[tail++] = out;
+                    } else if (_plug[other] != out) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /** Return the output of the scrambler of crib letter I for input
+         *  C, computing it on first use. */
+        private int scramble(int i, int c) {
+            int k = i * _size + c;
+            int out = _scrambler[k];
+            if (out < 0) {
+                out = _spec.path(_states[i], c);
+                _scrambler[k] = out;
+                _scrambler[i * _size + out] = c;
+            }
+            return out;
+        }
+
+        /** Record a stop at START with the plugs in _plug. */
+        private void record(int[] start) {
+            _stops.add(Stop.of(_spec, start, _plug));
+        }
+
+        /** Scramblers of this rotor order. */
+        private final MachineSpec _spec;
+
+        /** Rotor positions at each crib letter. */
+        private final int[][] _states;
+
+        /** Scrambler outputs at each crib letter, indexed by letter *
+         *  alphabet size + input; -1 where not yet computed. */
+        private final int[] _scrambler;
+
+        /** Plug of each letter implied by the current hypothesis, or -1. */
+        private final int[] _plug;
+
+        /** Implications waiting to be followed, as (letter, plug) pairs. */
+        private final int[] _queue;
+    }
+
+    /** The rotors tried. */
+    private final RotorLibrary _library;
+
+    /** Rotor orders tried. */
+    private final List<String[]> _orders;
+
+    /** Alphabet of the library. */
+    private final Alphabet _alphabet;
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** Number of keypresses before the crib. */
+    private final long _offset;
+
+    /** Number of crib letters. */
+    private final int _length;
+
+    /** Number of start positions of each rotor order. */
+    private final int _positions;
+
+    /** Crib letters. */
+    private final int[] _plain;
+
+    /** Ciphertext letters. */
+    private final int[] _cipher;
+
+    /** _edges[C] holds the crib letter numbers of the menu edges at C. */
+    private int[][] _edges;
+
+    /** _others[C][E] is the letter at the other end of edge E of C. */
+    private int[][] _others;
+
+    /** The letter whose plug is guessed: one with the most menu edges. */
+    private int _hub;
+
+    /** Number of states tried. */
+    private final LongAdder _tested = new LongAdder();
+
+    /** Value of System.nanoTime() when search() started, or 0. */
+    private volatile long _started;
+
+    /** Value of System.nanoTime() when search() finished, or 0. */
+    private volatile long _finished;
+
+    /** Stops found. */
+    private final List<Stop> _stops = Collections.synchronizedList(
+        new ArrayList<>());
+
+}
@@ -0,0 +1,88 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static enigma.MachineTest.PLUGBOARD;
+
+/** The suite of all JUnit tests for the Bombe class.
+ *  @author Areeb Khalfay
+ */
+public class BombeTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /** The crib: the first two lines of the standard test message. */
+    private static final String CRIB =
+        "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOOD";
+
+    /** A configuration with three of the naval rotors in a machine with
+     *  three moving rotors and one reflector. */
+    static final String CONFIG = String.join("\n",
+        "A-Z",
+        "4 3",
+        "I MQ (AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)",
+        "II ME (FIXVYOMW) (CDKLHUP) (ESZ) (BJ) (GR) (NT) (A) (Q)",
+        "III MV (ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)",
+        "B R (AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP)",
+        "     (RX) (SZ) (TV)", "");
+
+    /** Return the library described by TEXT. */
+    static RotorLibrary library(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        return new ConfigParser(new ChannelReader(
+            Channels.newChannel(new ByteArrayInputStream(bytes)))).parse();
+    }
+
+    @Test
+    public void checkRotorOrders() {
+        assertEquals(2 * 2 * 5 * 4 * 3,
+                     Bombe.rotorOrders(library(MainTest.CONFIG)).size());
+        List<String[]> orders = Bombe.rotorOrders(library(CONFIG));
+        assertEquals(6, orders.size());
+        for (String[] order : orders) {
+            assertEquals(4, order.length);
+            assertEquals("B", order[0]);
+        }
+    }
+
+    @Test
+    public void checkFindsKey() {
+        RotorLibrary library = library(CONFIG);
+        Machine mach = library.machine();
+        mach.insertRotors(new String[] { "B", "II", "I", "III" });
+        mach.setRotors("QEV");
+        mach.setPlugboard(new Permutation(PLUGBOARD, library.alphabet()));
+        mach.seek(10);
+        String cipher = mach.convert(CRIB);
+
+        Bombe bombe = new Bombe(library, CRIB, cipher, 10);
+        List<Bombe.Stop> stops = bombe.search();
+        assertEquals(6 * 26 * 26 * 26, bombe.total());
+        assertEquals(bombe.total(), bombe.tested());
+        assertTrue(bombe.statesPerSecond() > 0);
+        assertTrue(bombe.report(), bombe.report().startsWith("tested"));
+        assertEquals(1, stops.size());
+        Bombe.Stop stop = stops.get(0);
+        assertEquals("QEV", stop.setting());
+        assertArrayEquals(new String[] { "B", "II", "I", "III" },
+                          stop.order());
+        assertEquals("* B II I III QEV (BY) (EX) (HQ) (IP) (RT)",
+                     stop.toString());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkSelfEncryptionRejected() {
+        new Bombe(library(CONFIG), "ABC", "XBZ", 0);
+    }
+
+}
@@ -0,0 +1,405 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static enigma.EnigmaException.*;
+
+/** A catalogue of the characteristics of every rotor order and start
+ *  position of a rotor library, in the manner of Rejewski's card
+ *  catalogue.  With a message key enciphered twice at the start of each
+ *  message, the machine's permutations A1 ... A6 at the first six
+ *  keypresses from a start position link the first and fourth letters
+ *  (and second and fifth, third and sixth) of the indicators of a day's
+ *  traffic, and the cycle types of the products A4 A1, A5 A2 and A6 A3
+ *  can be read off that traffic.  These cycle types do not depend on the
+ *  plugboard, which only conjugates each product, so they narrow the key
+ *  to the few rotor orders and start positions that share them.
+ *
+ *  The catalogue is built once for a library by build(), which computes
+ *  the characteristic of every position in parallel with the rotors'
+ *  conversion tables and Permutation algebra, and is written to an index
+ *  file sorted by signature: a 64-bit hash of the three cycle types.  A
+ *  file is memory-mapped by load() and searched by binary search, so a
+ *  query reads a few pages and costs microseconds.
+ *
+ *  An index file holds the magic number MAGIC, a two-byte version, a
+ *  one-byte number of rotor slots and an unused byte, the four-byte size
+ *  of the alphabet and each of its symbols as a four-byte code point, the
+ *  four-byte number of rotor orders and each rotor name of each order as
+ *  a two-byte length and that many bytes of UTF-8, and the eight-byte
+ *  number of entries; the header is big-endian.  After padding to a
+ *  multiple of eight bytes come the signatures of the entries, in
+ *  ascending (signed) order, as little-endian longs, then the entries'
+ *  keys as little-endian ints.  A key is the index of the entry's rotor
+ *  order times the number of start positions plus the number of its start
+ *  position, read as in PositionKernel.
+ *  @author Areeb Khalfay
+ */
+class Catalogue {
+
+    /** The catalogue of ORDERS of the alphabet whose symbols are the code
+     *  points SYMBOLS, with signatures SIGNATURES and keys KEYS, for
+     *  NUMROTORS slots. */
+    private Catalogue(int[] symbols, int numRotors, List<String[]> orders,
+                      LongBuffer signatures, IntBuffer keys) {
+        _alphabet = CodePointAlphabet.of(new String(symbols, 0,
+                                                    symbols.length));
+        _size = symbols.length;
+        _numRotors = numRotors;
+        _orders = orders;
+        _signatures = signatures;
+        _keys = keys;
+        _positions = positions(_size, numRotors);
+    }
+
+    /** Write the catalogue of every rotor order of LIBRARY (see
+     *  Bombe.rotorOrders) to the index file named NAME. */
+    static void build(RotorLibrary library, String name) {
+        build(library, Bombe.rotorOrders(library), name,
+              ForkJoinPool.commonPool());
+    }
+
+    /** Write the catalogue of the rotor orders ORDERS of LIBRARY (each
+     *  naming the rotor of every slot, reflector first) to the index file
+     *  named NAME, computing characteristics on POOL. */
+    static void build(RotorLibrary library, List<String[]> orders,
+                      String name, ForkJoinPool pool) {
+        int size = library.alphabet().size();
+        int positions = positions(size, library.numRotors());
+        int count = Math.multiplyExact(orders.size(), positions);
+        long[] signatures = new long[count];
+        int[] keys = new int[count];
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        int share = positions / size;
+        for (int k = 0; k < orders.size(); k += 1) {
+            MachineSpec spec = library.spec(orders.get(k), null);
+            for (int first = 0; first < size; first += 1) {
+                final int from = k * positions + first * share;
+                tasks.add(pool.submit(() -> {
+                    int[] start = new int[spec.numRotors()];
+                    for (int key = from; key < from + share; key += 1) {
+                        decode(key % positions, size, start);
+                        signatures[key] = characteristic(spec, start);
+                        keys[key] = key;
+                    }
+                }));
+            }
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+        sort(signatures, keys);
+        write(name, library, orders, signatures, keys);
+    }
+
+    /** Return the catalogue in the index file named NAME, which is
+     *  memory-mapped, not read. */
+    static Catalogue load(String name) {
+        ByteBuffer index;
+        try (FileChannel file = FileChannel.open(Paths.get(name),
+                                                 StandardOpenOption.READ)) {
+            index = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+        } catch (IOException | RuntimeException excp) {
+            throw error("could not open %s", name);
+        }
+        try {
+            if (index.getInt() != MAGIC || index.getShort() != VERSION) {
+                throw error("%s is not a catalogue", name);
+            }
+            int numRotors = index.get();
+            index.get();
+            int size = index.getInt();
+            if (size < 0 || size > index.remaining() / Integer.BYTES) {
+                throw error("%s is not a valid catalogue", name);
+            }
+            int[] symbols = new int[size];
+            for (int i = 0; i < symbols.length; i += 1) {
+                symbols[i] = index.getInt();
+            }
+            List<String[]> orders = new ArrayList<>();
+            for (int k = index.getInt(); k > 0; k -= 1) {
+                String[] order = new String[numRotors];
+                for (int slot = 0; slot < numRotors; slot += 1) {
+                    byte[] bytes = new byte[index.getShort() & 0xffff];
+                    index.get(bytes);
+                    order[slot] = new String(bytes, StandardCharsets.UTF_8);
+                }
+                orders.add(order);
+            }
+            int count = Math.toIntExact(index.getLong());
+            index.position(align(index.position()));
+            LongBuffer signatures = index.slice()
+                .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            signatures.limit(count);
+            index.position(index.position() + count * Long.BYTES);
+            IntBuffer keys = index.slice()
+                .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            keys.limit(count);
+            return new Catalogue(symbols, numRotors, orders,
+                                 signatures.slice(), keys.slice());
+        } catch (RuntimeException excp) {
+            if (excp instanceof EnigmaException) {
+                throw excp;
+            }
+            throw error("%s is not a valid catalogue", name);
+        }
+    }
+
+    /** Return the number of entries: rotor orders times start
+     *  positions. */
+    int size() {
+        return _signatures.limit();
+    }
+
+    /** Return the keys whose characteristic has the signature SIGNATURE,
+     *  as stops without plugs. */
+    List<Bombe.Stop> find(long signature) {
+        int lo = 0, hi = size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (_signatures.get(mid) < signature) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        List<Bombe.Stop> result = new ArrayList<>();
+        int[] start = new int[_numRotors];
+        for (int i = lo; i < size() && _signatures.get(i) == signature;
+             i += 1) {
+            int key = _keys.get(i);
+            decode(key % _positions, _size, start);
+            String[] order = _orders.get(key / _positions);
+            StringBuilder setting = new StringBuilder();
+            for (int slot = 1; slot < _numRotors; slot += 1) {
+                setting.appendCodePoint(_alphabet.toCodePoint(start[slot]));
+            }
+            result.add(new Bombe.Stop(order.clone(), setting.toString(), ""));
+        }
+        return result;
+    }
+
+    /** Return the keys whose products A4 A1, A5 A2 and A6 A3 are
+     *  conjugate to A14, A25 and A36 respectively. */
+    List<Bombe.Stop> find(Permutation a14, Permutation a25,
+                          Permutation a36) {
+        return find(signature(a14.cycleType(), a25.cycleType(),
+                              a36.cycleType()));
+    }
+
+    /** Return the signature of the characteristic of SPEC with its rotors
+     *  at START, which is not changed. */
+    static long characteristic(MachineSpec spec, int[] start) {
+        int size = spec.alphabet().size();
+        int[] positions = start.clone();
+        Permutation[] a = new Permutation[2 * LINKS];
+        for (int i = 0; i < a.length; i += 1) {
+            spec.stepping().step(positions);
+            int[] table = new int[size];
+            spec.composePath(positions, table, 0);
+            a[i] = new Permutation(table, spec.alphabet());
+        }
+        int[][] types = new int[LINKS][];
+        for (int i = 0; i < LINKS; i += 1) {
+            types[i] = a[i + LINKS].compose(a[i]).cycleType();
+        }
+        return signature(types);
+    }
+
+    /** Return the signature of the cycle types TYPES, each longest cycle
+     *  first as returned by Permutation.cycleType(). */
+    static long signature(int[]... types) {
+        long hash = FNV_OFFSET;
+        for (int[] type : types) {
+            for (int length : type) {
+                hash = (hash ^ length) * FNV_PRIME;
+            }
+            hash = (hash ^ 0xff) * FNV_PRIME;
+        }
+        hash ^= hash >>> 31;
+        hash *= 0x7fb5d329728ea185L;
+        return hash ^ (hash >>> 27);
+    }
+
+    /** Sort SIGNATURES into ascending order, applying the same moves to
+     *  KEYS, by radix sort, a byte at a time.  Each pass moves the
+     *  entries between the given arrays and scratch arrays; after the
+     *  eighth they are back in the given ones. */
+    private static void sort(long[] signatures, int[] keys) {
+        int n = signatures.length;
+        long[] signatures2 = new long[n];
+        int[] keys2 = new int[n];
+        for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+            int[] first = new int[1 << Byte.SIZE];
+            for (long signature : signatures) {
+                first[digit(signature, shift)] += 1;
+            }
+            for (int d = 0, total = 0; d < first.length; d += 1) {
+                int count = first[d];
+                first[d] = total;
+                total += count;
+            }
+            for (int i = 0; i < n; i += 1) {
+                int to = first[digit(signatures[i], shift)]++;
+                signatures2[to] = signatures[i];
+                keys2[to] = keys[i];
+            }
+            long[] swapSignatures = signatures;
+            signatures = signatures2;
+            signatures2 = swapSignatures;
+            int[] swapKeys = keys;
+            keys = keys2;
+            keys2 = swapKeys;
+        }
+    }
+
+    /** Return the byte of SIGNATURE at SHIFT, ordered so that sorting by
+     *  unsigned digits gives signed order. */
+    private static int digit(long signature, int shift) {
+        return (int) (((signature ^ Long.MIN_VALUE) >>> shift) & 0xff);
+    }
+
+    /** Write the catalogue of ORDERS of LIBRARY, with SIGNATURES and
+     *  KEYS, to the index file named NAME. */
+    private static void write(String name, RotorLibrary library,
+                              List<String[]> orders, long[] signatures,
+                              int[] keys) {
+        Alphabet alphabet = library.alphabet();
+        List<byte[]> names = new ArrayList<>();
+        int header = HEADER_SIZE + alphabet.size() * Integer.BYTES
+            + Integer.BYTES + Long.BYTES;
+        for (String[] order : orders) {
+            for (String rotor : order) {
+                byte[] bytes = rotor.getBytes(StandardCharsets.UTF_8);
+                names.add(bytes);
+                header += Short.BYTES + bytes.length;
+            }
+        }
+        ByteBuffer out = ByteBuffer.allocate(align(header));
+        out.putInt(MAGIC).putShort(VERSION)
+            .put((byte) library.numRotors()).put((byte) 0)
+            .putInt(alphabet.size());
+        for (int i = 0; i < alphabet.size(); i += 1) {
+            out.putInt(alphabet.toCodePoint(i));
+        }
+        out.putInt(orders.size());
+        for (byte[] bytes : names) {
+            out.putShort((short) bytes.length).put(bytes);
+        }
+        out.putLong(signatures.length);
+        out.position(out.capacity());
+        out.flip();
+        try (FileChannel file = FileChannel.open(Paths.get(name),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            drain(file, out);
+            ByteBuffer block = ByteBuffer.allocateDirect(BLOCK_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            for (long signature : signatures) {
+                if (block.remaining() < Long.BYTES) {
+                    drain(file, block.flip());
+                    block.clear();
+                }
+                block.putLong(signature);
+            }
+            for (int key : keys) {
+                if (block.remaining() < Integer.BYTES) {
+                    drain(file, block.flip());
+                    block.clear();
+                }
+                block.putInt(key);
+            }
+            drain(file, block.flip());
+        } catch (IOException | RuntimeException excp) {
+            throw error("could not write %s", name);
+        }
+    }
+
+    /** Write the rest of BUFFER to FILE. */
+    private static void drain(FileChannel file, ByteBuffer buffer)
+        throws IOException {
+        while (buffer.hasRemaining()) {
+            file.write(buffer);
+        }
+    }
+
+    /** Set START to the start position numbered INDEX of an alphabet of
+     *  SIZE characters, as PositionKernel.decode does. */
+    private static void decode(int index, int size, int[] start) {
+        start[0] = 0;
+        for (int slot = start.length - 1; slot > 0; slot -= 1) {
+            start[slot] = index % size;
+            index /= size;
+        }
+    }
+
+    /** Return the number of start positions of NUMROTORS slots over an
+     *  alphabet of SIZE characters. */
+    private static int positions(int size, int numRotors) {
+        int positions = 1;
+        for (int slot = 1; slot < numRotors; slot += 1) {
+            positions = Math.multiplyExact(positions, size);
+        }
+        return positions;
+    }
+
+    /** Return OFFSET rounded up to a multiple of eight. */
+    private static int align(int offset) {
+        return (offset + Long.BYTES - 1) & -Long.BYTES;
+    }
+
+    /** First four bytes of an index file: "ENCT" in ASCII. */
+    static final int MAGIC = 0x454e4354;
+
+    /** Version of the index file format. */
+    private static final short VERSION = 2;
+
+    /** Bytes in an index file before the symbols of the alphabet. */
+    private static final int HEADER_SIZE = 12;
+
+    /** Number of products in a characteristic. */
+    private static final int LINKS = 3;
+
+    /** Size of the buffer in which entries are written. */
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    /** Starting value of the FNV-1a hash. */
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    /** Multiplier of the FNV-1a hash. */
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /** The alphabet of the rotors. */
+    private final Alphabet _alphabet;
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** Number of rotor slots. */
+    private final int _numRotors;
+
+    /** The rotor orders, by index. */
+    private final List<String[]> _orders;
+
+    /** Number of start positions of each rotor order. */
+    private final int _positions;
+
+    /** Signature of each entry, in ascending order. */
+    private final LongBuffer _signatures;
+
+    /** Key of each entry. */
+    private final IntBuffer _keys;
+
+}
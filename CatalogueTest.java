@@ -0,0 +1,102 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static enigma.BombeTest.*;
+
+/** The suite of all JUnit tests for the Catalogue class.
+ *  @author Areeb Khalfay
+ */
+public class CatalogueTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /** Rotor orders catalogued by the tests. */
+    private static final List<String[]> ORDERS = List.of(
+        new String[] { "B", "I", "II", "III" },
+        new String[] { "B", "III", "I", "II" });
+
+    /** Return the catalogue of ORDERS of LIBRARY, written to a temporary
+     *  file and loaded from it. */
+    private static Catalogue catalogue(RotorLibrary library)
+        throws IOException {
+        Path index = Files.createTempFile("enigma", ".cat");
+        Catalogue.build(library, ORDERS, index.toString(),
+                        ForkJoinPool.commonPool());
+        return Catalogue.load(index.toString());
+    }
+
+    @Test
+    public void checkFindsKey() throws IOException {
+        RotorLibrary library = library(CONFIG);
+        Catalogue catalogue = catalogue(library);
+        assertEquals(2 * 26 * 26 * 26, catalogue.size());
+
+        Permutation plugboard = new Permutation("(AQ) (GT) (LS)",
+                                                library.alphabet());
+        MachineSpec spec = library.spec(ORDERS.get(1), plugboard);
+        MachineState state = spec.state("KDO");
+        int size = library.alphabet().size();
+        Permutation[] a = new Permutation[6];
+        for (int i = 0; i < a.length; i += 1) {
+            int[] table = new int[size];
+            for (int c = 0; c < size; c += 1) {
+                table[c] = spec.convert(state.copy(), c);
+            }
+            spec.convert(state, 0);
+            a[i] = new Permutation(table, library.alphabet());
+        }
+        List<Bombe.Stop> found = catalogue.find(a[3].compose(a[0]),
+                                                a[4].compose(a[1]),
+                                                a[5].compose(a[2]));
+        boolean hit = false;
+        for (Bombe.Stop stop : found) {
+            hit |= stop.toString().equals("* B III I II KDO");
+        }
+        assertTrue(hit);
+        assertTrue(found.size() < 200);
+        assertEquals(found.size(), catalogue.find(
+            Catalogue.characteristic(spec, spec.state("KDO").positions()))
+            .size());
+        assertTrue(catalogue.find(Catalogue.signature(new int[] { 26 }))
+                   .isEmpty());
+    }
+
+    @Test
+    public void checkCodePointAlphabet() throws IOException {
+        RotorLibrary library = library(ConfigParserTest.SYMBOLS);
+        String[] order = { "B", "II", "I" };
+        Path index = Files.createTempFile("enigma", ".cat");
+        Catalogue.build(library, List.<String[]>of(order), index.toString(),
+                        ForkJoinPool.commonPool());
+        Catalogue catalogue = Catalogue.load(index.toString());
+        assertEquals(6 * 6, catalogue.size());
+        MachineSpec spec = library.spec(order, null);
+        String setting = "\u05d0\ud83d\ude00";
+        boolean hit = false;
+        for (Bombe.Stop stop : catalogue.find(Catalogue.characteristic(
+                 spec, spec.state(setting).positions()))) {
+            hit |= stop.setting().equals(setting);
+        }
+        assertTrue(hit);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkNotACatalogue() throws IOException {
+        Path file = Files.createTempFile("enigma", ".cat");
+        Files.write(file, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+        Catalogue.load(file.toString());
+    }
+
+}
@@ -0,0 +1,169 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static enigma.EnigmaException.*;
+
+/** A single-pass source of characters decoded from a byte channel, using
+ *  a fixed amount of memory however long the input.  Files are read
+ *  through a sliding memory-mapped window; other channels through one
+ *  reusable buffer.
+ *  @author Areeb Khalfay
+ */
+class ChannelReader {
+
+    /** A reader of the UTF-8 characters arriving on CHANNEL. */
+    ChannelReader(ReadableByteChannel channel) {
+        _channel = channel;
+        _file = null;
+        _bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        _bytes.flip();
+    }
+
+    /** A reader of the UTF-8 characters of FILE, which is memory-mapped
+     *  WINDOW bytes at a time. */
+    ChannelReader(FileChannel file, long window) {
+        _channel = file;
+        _file = file;
+        _window = window;
+        _bytes = ByteBuffer.allocate(0);
+    }
+
+    /** Return a reader of the file named NAME. */
+    static ChannelReader open(String name) {
+        try {
+            return new ChannelReader(FileChannel.open(Paths.get(name),
+                    StandardOpenOption.READ), MAP_WINDOW);
+        } catch (IOException | RuntimeException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Return the next character, or -1 at the end of the input. */
+    int read() {
+        if (!_chars.hasRemaining() && !fill()) {
+            return -1;
+        }
+        return _chars.get();
+    }
+
+    /** Return the next Unicode code point, combining a surrogate pair
+     *  into one, or -1 at the end of the input. */
+    int readCodePoint() {
+        int ch = read();
+        if (ch >= 0 && Character.isHighSurrogate((char) ch)) {
+            int low = read();
+            if (low < 0 || !Character.isLowSurrogate((char) low)) {
+                throw error("malformed character");
+            }
+            return Character.toCodePoint((char) ch, (char) low);
+        }
+        return ch;
+    }
+
+    /** Close my channel. */
+    void close() {
+        try {
+            _channel.close();
+        } catch (IOException excp) {
+            throw error("could not close input");
+        }
+    }
+
+    /** Decode more characters into _chars, reading or mapping more bytes
+     *  as needed.  Returns false at the end of the input. */
+    private boolean fill() {
+        _chars.clear();
+        try {
+            while (_chars.position() == 0 && !_finished) {
+                if (_eof) {
+                    _decoder.decode(_bytes, _chars, true);
+                    _decoder.flush(_chars);
+                    _finished = true;
+                } else {
+                    _decoder.decode(_bytes, _chars, false);
+                    if (_chars.position() > 0) {
+                        break;
+                    } else if (_file != null) {
+                        mapNext();
+                    } else {
+                        readNext();
+                    }
+                }
+            }
+        } catch (IOException excp) {
+            throw error("could not read input: %s", excp.getMessage());
+        }
+        _chars.flip();
+        return _chars.hasRemaining();
+    }
+
+    /** Map the next window of _file, starting at its first byte not yet
+     *  decoded. */
+    private void mapNext() throws IOException {
+        _mapped += _bytes.position();
+        long size = _file.size();
+        if (_mapped >= size) {
+            _eof = true;
+            return;
+        }
+        long length = Math.min(_window, size - _mapped);
+        _bytes = _file.map(FileChannel.MapMode.READ_ONLY, _mapped, length);
+    }
+
+    /** Read more bytes from _channel after those not yet decoded. */
+    private void readNext() throws IOException {
+        _bytes.compact();
+        int n = _channel.read(_bytes);
+        _bytes.flip();
+        if (n < 0) {
+            _eof = true;
+        }
+    }
+
+    /** Bytes read through a buffer at a time. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Bytes of a file mapped at a time. */
+    static final long MAP_WINDOW = 1L << 26;
+
+    /** The channel I read. */
+    private final ReadableByteChannel _channel;
+
+    /** The channel I read if it is a file to be mapped, else null. */
+    private final FileChannel _file;
+
+    /** Size of each mapped window of _file. */
+    private long _window;
+
+    /** File offset of the start of the current window of _file. */
+    private long _mapped;
+
+    /** Bytes read or mapped but not yet decoded. */
+    private ByteBuffer _bytes;
+
+    /** Decoded characters not yet returned by read(). */
+    private final CharBuffer _chars = CharBuffer.allocate(BUFFER_SIZE).flip();
+
+    /** Decoder of the input bytes. */
+    private final CharsetDecoder _decoder = StandardCharsets.UTF_8
+        .newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    /** True once every byte of the input has been read or mapped. */
+    private boolean _eof;
+
+    /** True once every byte of the input has been decoded. */
+    private boolean _finished;
+
+}
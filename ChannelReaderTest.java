@@ -0,0 +1,60 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/** The suite of all JUnit tests for the ChannelReader class.
+ *  @author Areeb Khalfay
+ */
+public class ChannelReaderTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Text with multi-byte characters that straddle small windows. */
+    private static final String TEXT =
+        "ABC\u00e9\u00e9 DEF\n\u20ac\u20acGHI\nJKL";
+
+    /** Return everything READER reads. */
+    private String readAll(ChannelReader reader) {
+        StringBuilder result = new StringBuilder();
+        for (int ch = reader.read(); ch >= 0; ch = reader.read()) {
+            result.append((char) ch);
+        }
+        assertEquals(-1, reader.read());
+        reader.close();
+        return result.toString();
+    }
+
+    @Test
+    public void checkStream() {
+        byte[] bytes = TEXT.getBytes(StandardCharsets.UTF_8);
+        ChannelReader reader = new ChannelReader(
+            Channels.newChannel(new ByteArrayInputStream(bytes)));
+        assertEquals(TEXT, readAll(reader));
+    }
+
+    @Test
+    public void checkSmallMappedWindows() throws IOException {
+        Path file = Files.createTempFile("enigma", ".inp");
+        Files.write(file, TEXT.getBytes(StandardCharsets.UTF_8));
+        for (long window = 4; window < 12; window += 1) {
+            ChannelReader reader = new ChannelReader(
+                FileChannel.open(file, StandardOpenOption.READ), window);
+            assertEquals("window " + window, TEXT, readAll(reader));
+        }
+    }
+
+}
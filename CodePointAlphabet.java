@@ -0,0 +1,147 @@
+package enigma;
+
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
+/** An Alphabet of arbitrary Unicode code points, in a given order.  The
+ *  symbols need not be contiguous, and may lie outside the Basic
+ *  Multilingual Plane.  Both directions of the mapping take constant
+ *  time: indices are found through a table with one page of PAGE_SIZE
+ *  entries for each block of code points that holds a symbol, and code
+ *  points through an array.
+ *  @author Areeb Khalfay
+ */
+class CodePointAlphabet extends Alphabet {
+
+    /** An alphabet whose symbols are the code points SYMBOLS, in order,
+     *  which must be distinct. */
+    CodePointAlphabet(int... symbols) {
+        if (symbols.length == 0) {
+            throw error("empty alphabet");
+        }
+        _symbols = symbols.clone();
+        int max = 0;
+        for (int symbol : _symbols) {
+            if (!Character.isValidCodePoint(symbol)) {
+                throw error("invalid code point %x in alphabet", symbol);
+            }
+            max = Math.max(max, symbol);
+        }
+        _pages = new int[(max >>> PAGE_BITS) + 1][];
+        boolean bmp = true;
+        for (int i = 0; i < _symbols.length; i += 1) {
+            int symbol = _symbols[i];
+            int[] page = _pages[symbol >>> PAGE_BITS];
+            if (page == null) {
+                page = _pages[symbol >>> PAGE_BITS] = new int[PAGE_SIZE];
+                Arrays.fill(page, -1);
+            }
+            if (page[symbol & PAGE_MASK] >= 0) {
+                throw error("'%s' appears twice in the alphabet",
+                            new String(Character.toChars(symbol)));
+            }
+            page[symbol & PAGE_MASK] = i;
+            bmp &= Character.isBmpCodePoint(symbol);
+        }
+        _bmp = bmp;
+    }
+
+    /** Return the alphabet of the code points of SYMBOLS, in order: a
+     *  CharacterRange if they run in order through a range of characters,
+     *  and otherwise a CodePointAlphabet. */
+    static Alphabet of(String symbols) {
+        int[] codePoints = symbols.codePoints().toArray();
+        for (int i = 0; i < codePoints.length; i += 1) {
+            if (codePoints[i] != codePoints[0] + i
+                || !Character.isBmpCodePoint(codePoints[i])) {
+                return new CodePointAlphabet(codePoints);
+            }
+        }
+        if (codePoints.length == 0) {
+            throw error("empty alphabet");
+        }
+        return new CharacterRange((char) codePoints[0],
+                                  (char) codePoints[codePoints.length - 1]);
+    }
+
+    @Override
+    int size() {
+        return _symbols.length;
+    }
+
+    @Override
+    boolean contains(char ch) {
+        return containsCodePoint(ch);
+    }
+
+    @Override
+    char toChar(int index) {
+        int symbol = toCodePoint(index);
+        if (!Character.isBmpCodePoint(symbol)) {
+            throw error("symbol %d is not a single character", index);
+        }
+        return (char) symbol;
+    }
+
+    @Override
+    int toInt(char ch) {
+        return toIndex(ch);
+    }
+
+    @Override
+    boolean containsCodePoint(int codePoint) {
+        return lookup(codePoint) >= 0;
+    }
+
+    @Override
+    int toCodePoint(int index) {
+        if (index < 0 || index >= _symbols.length) {
+            throw error("character index out of range");
+        }
+        return _symbols[index];
+    }
+
+    @Override
+    int toIndex(int codePoint) {
+        int index = lookup(codePoint);
+        if (index < 0) {
+            throw error("character out of range");
+        }
+        return index;
+    }
+
+    @Override
+    boolean bmp() {
+        return _bmp;
+    }
+
+    /** Return the index of CODEPOINT, or -1 if it is not in me. */
+    private int lookup(int codePoint) {
+        int block = codePoint >>> PAGE_BITS;
+        if (block >= _pages.length || _pages[block] == null) {
+            return -1;
+        }
+        return _pages[block][codePoint & PAGE_MASK];
+    }
+
+    /** Number of bits of a code point that select its entry in a page. */
+    private static final int PAGE_BITS = 8;
+
+    /** Number of entries in a page. */
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    /** Mask selecting a code point's entry in a page. */
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    /** My symbols, in order. */
+    private final int[] _symbols;
+
+    /** Index of each code point, -1 for none, by block of PAGE_SIZE code
+     *  points; null for blocks with no symbols. */
+    private final int[][] _pages;
+
+    /** True iff all my symbols are single characters. */
+    private final boolean _bmp;
+
+}
@@ -0,0 +1,91 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the CodePointAlphabet class.
+ *  @author Areeb Khalfay
+ */
+public class CodePointAlphabetTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Symbols of a small alphabet that is neither contiguous nor within
+     *  the Basic Multilingual Plane: A, C, alpha, a CJK ideograph and an
+     *  emoji. */
+    private static final String MIXED = "AC\u03b1\u4e00\ud83d\ude00";
+
+    @Test
+    public void checkLookup() {
+        Alphabet alphabet = CodePointAlphabet.of(MIXED);
+        assertTrue(alphabet instanceof CodePointAlphabet);
+        assertEquals(5, alphabet.size());
+        assertFalse(alphabet.bmp());
+        int[] symbols = MIXED.codePoints().toArray();
+        for (int i = 0; i < symbols.length; i += 1) {
+            assertTrue(alphabet.containsCodePoint(symbols[i]));
+            assertEquals(i, alphabet.toIndex(symbols[i]));
+            assertEquals(symbols[i], alphabet.toCodePoint(i));
+        }
+        assertEquals(2, alphabet.toInt('\u03b1'));
+        assertEquals('\u4e00', alphabet.toChar(3));
+        assertFalse(alphabet.contains('B'));
+        assertFalse(alphabet.contains('\ud83d'));
+        assertFalse(alphabet.containsCodePoint(0x10ffff));
+        assertFalse(alphabet.containsCodePoint(0x1f601));
+        try {
+            alphabet.toChar(4);
+            fail("no error for a supplementary character");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test
+    public void checkOf() {
+        Alphabet upper = CodePointAlphabet.of(TestUtils.UPPER_STRING);
+        assertTrue(upper instanceof CharacterRange);
+        assertEquals(26, upper.size());
+        assertTrue(upper.bmp());
+        assertEquals('Z', upper.toCodePoint(25));
+        Alphabet shuffled = CodePointAlphabet.of("ZYX");
+        assertTrue(shuffled instanceof CodePointAlphabet);
+        assertEquals(0, shuffled.toInt('Z'));
+        assertTrue(shuffled.bmp());
+        try {
+            CodePointAlphabet.of("ABCA");
+            fail("no error for a repeated symbol");
+        } catch (EnigmaException excp) {
+            assertTrue(excp.getMessage().contains("twice"));
+        }
+    }
+
+    @Test
+    public void checkLargePermutations() {
+        int[] symbols = new int[3000];
+        for (int i = 0; i < symbols.length; i += 1) {
+            symbols[i] = 0x4e00 + 3 * i;
+        }
+        Alphabet alphabet = new CodePointAlphabet(symbols);
+        int[] forward = new int[symbols.length];
+        for (int i = 0; i < forward.length; i += 1) {
+            forward[i] = (i + 7) % forward.length;
+        }
+        Permutation shift = new Permutation(forward, alphabet);
+        assertEquals(symbols.length, shift.size());
+        assertEquals(symbols[7],
+                     shift.permute((char) symbols[0]));
+        assertEquals(symbols[0],
+                     shift.invert((char) symbols[7]));
+        assertArrayEquals(new int[] { symbols.length },
+                          shift.cycleType());
+        Permutation reparsed = new Permutation(shift.cycles(), alphabet);
+        assertEquals(shift.cycles(), reparsed.cycles());
+        assertEquals(0, shift.power(symbols.length).cycles().length());
+    }
+
+}
@@ -0,0 +1,237 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import static enigma.EnigmaException.*;
+
+/** A single-pass parser of Enigma configuration files.  The format is an
+ *  alphabet, the number of rotor slots and of pawls, and then any number
+ *  of rotor descriptions, each a name, a type (M, N or R, with the notches
+ *  of a moving rotor following the M) and the rotor's permutation in
+ *  cycle notation, which may continue over several lines.  Errors are
+ *  reported with the line and column at which they were found.
+ *  @author Areeb Khalfay
+ */
+class ConfigParser {
+
+    /** A parser of the configuration read from INPUT. */
+    ConfigParser(ChannelReader input) {
+        _input = input;
+        advance();
+    }
+
+    /** Return the rotor library described by my input. */
+    RotorLibrary parse() {
+        Alphabet alphabet = parseAlphabet(word("alphabet"));
+        int numRotors = number("number of rotor slots");
+        int numPawls = number("number of pawls");
+        if (numRotors < 2) {
+            throw errorHere("a machine needs at least 2 rotor slots");
+        }
+        if (numPawls < 0 || numPawls >= numRotors) {
+            throw errorHere("number of pawls must be between 0 and %d",
+                            numRotors - 1);
+        }
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        HashSet<String> names = new HashSet<>();
+        skipWhitespace();
+        while (_ch >= 0) {
+            int line = _line, column = _column;
+            Rotor rotor = parseRotor(alphabet);
+            if (!names.add(rotor.name().toUpperCase())) {
+                throw errorAt(line, column, "duplicate rotor %s",
+                              rotor.name());
+            }
+            rotors.add(rotor);
+            skipWhitespace();
+        }
+        return new RotorLibrary(alphabet, numRotors, numPawls, rotors);
+    }
+
+    /** Return the alphabet described by TOKEN: either FIRST-LAST, or the
+     *  characters of TOKEN in order, which must be distinct and which may
+     *  be any Unicode symbols. */
+    private Alphabet parseAlphabet(String token) {
+        if (token.length() == 3 && token.charAt(1) == '-') {
+            return new CharacterRange(token.charAt(0), token.charAt(2));
+        }
+        try {
+            return CodePointAlphabet.of(token);
+        } catch (EnigmaException excp) {
+            throw errorAt(_tokenLine, _tokenColumn, "%s", excp.getMessage());
+        }
+    }
+
+    /** Return the next rotor description, over ALPHABET. */
+    private Rotor parseRotor(Alphabet alphabet) {
+        String name = word("rotor name");
+        int typeLine = _line, typeColumn = _column;
+        String type = word("rotor type");
+        int[] forward = new int[alphabet.size()];
+        for (int i = 0; i < forward.length; i++) {
+            forward[i] = i;
+        }
+        boolean[] placed = new boolean[forward.length];
+        skipWhitespace();
+        while (_ch == '(') {
+            parseCycle(alphabet, forward, placed);
+            skipWhitespace();
+        }
+        Permutation perm = new Permutation(forward, alphabet);
+        switch (type.charAt(0)) {
+        case 'M':
+            int[] notches = type.codePoints().toArray();
+            for (int i = 1; i < notches.length; i++) {
+                if (!alphabet.containsCodePoint(notches[i])) {
+                    throw errorAt(typeLine, typeColumn + i,
+                                  "notch '%c' is not in the alphabet",
+                                  notches[i]);
+                }
+            }
+            return new MovingRotor(name, perm, type);
+        case 'N':
+        case 'R':
+            if (type.length() > 1) {
+                throw errorAt(typeLine, typeColumn + 1,
+                              "only moving rotors have notches");
+            }
+            if (type.charAt(0) == 'N') {
+                return new FixedRotor(name, perm);
+            }
+            return new Reflector(name, perm);
+        default:
+            throw errorAt(typeLine, typeColumn,
+                          "rotor type must be M, N or R, not %s", type);
+        }
+    }
+
+    /** Parse one parenthesized cycle of characters of ALPHABET, the
+     *  current character being its '(', into FORWARD, marking the indices
+     *  used in PLACED, as Permutation does for cycle notation. */
+    private void parseCycle(Alphabet alphabet, int[] forward,
+                            boolean[] placed) {
+        int openLine = _line, openColumn = _column;
+        advance();
+        int first = -1, prev = -1;
+        while (_ch != ')') {
+            if (_ch < 0) {
+                throw errorAt(openLine, openColumn, "unterminated cycle");
+            }
+            if (_ch == '(') {
+                throw errorHere("nested '(' in cycle");
+            }
+            if (!Character.isWhitespace(_ch)) {
+                try {
+                    prev = Permutation.extendCycle(alphabet, forward, placed,
+                                                   prev, _ch);
+                } catch (EnigmaException excp) {
+                    throw errorHere("%s", excp.getMessage());
+                }
+                if (first < 0) {
+                    first = prev;
+                }
+            }
+            advance();
+        }
+        advance();
+        if (first >= 0) {
+            forward[prev] = first;
+        }
+    }
+
+    /** Return the next whitespace-delimited word, which may not start
+     *  with '(' and which is described as WHAT in error messages. */
+    private String word(String what) {
+        skipWhitespace();
+        if (_ch < 0) {
+            throw errorHere("configuration file truncated: expected %s",
+                            what);
+        }
+        if (_ch == '(') {
+            throw errorHere("expected %s, not a cycle", what);
+        }
+        _token.setLength(0);
+        _tokenLine = _line;
+        _tokenColumn = _column;
+        while (_ch >= 0 && !Character.isWhitespace(_ch) && _ch != '(') {
+            _token.appendCodePoint(_ch);
+            advance();
+        }
+        return _token.toString();
+    }
+
+    /** Return the next word as a non-negative decimal number, described as
+     *  WHAT in error messages. */
+    private int number(String what) {
+        String token = word(what);
+        int value = 0;
+        for (int i = 0; i < token.length(); i++) {
+            char digit = token.charAt(i);
+            if (digit < '0' || digit > '9' || value > MAX_NUMBER) {
+                throw errorAt(_tokenLine, _tokenColumn,
+                              "expected %s, not %s", what, token);
+            }
+            value = value * 10 + digit - '0';
+        }
+        return value;
+    }
+
+    /** Skip whitespace in the input. */
+    private void skipWhitespace() {
+        while (_ch >= 0 && Character.isWhitespace(_ch)) {
+            advance();
+        }
+    }
+
+    /** Read the next input character into _ch as a code point, joining
+     *  surrogate pairs, and keep track of its line and column. */
+    private void advance() {
+        if (_ch == '\n') {
+            _line += 1;
+            _column = 1;
+        } else if (_ch >= 0) {
+            _column += 1;
+        }
+        try {
+            _ch = _input.readCodePoint();
+        } catch (EnigmaException excp) {
+            throw errorHere("%s", excp.getMessage());
+        }
+    }
+
+    /** Return an exception reporting MSGFORMAT and ARGUMENTS (as for
+     *  String.format) at the current input position. */
+    private EnigmaException errorHere(String msgFormat,
+                                      Object... arguments) {
+        return errorAt(_line, _column, msgFormat, arguments);
+    }
+
+    /** Return an exception reporting MSGFORMAT and ARGUMENTS (as for
+     *  String.format) at LINE and COLUMN of the input. */
+    private static EnigmaException errorAt(int line, int column,
+                                           String msgFormat,
+                                           Object... arguments) {
+        return error("configuration line %d, column %d: %s", line, column,
+                     String.format(msgFormat, arguments));
+    }
+
+    /** Largest number accepted before its last digit. */
+    private static final int MAX_NUMBER = Integer.MAX_VALUE / 10 - 1;
+
+    /** Source of the configuration. */
+    private final ChannelReader _input;
+
+    /** The current input code point, or -1 at the end of the input. */
+    private int _ch;
+
+    /** Line and column of _ch, starting from 1. */
+    private int _line = 1, _column = 0;
+
+    /** Characters of the word being read. */
+    private final StringBuilder _token = new StringBuilder();
+
+    /** Line and column at which the last word started. */
+    private int _tokenLine, _tokenColumn;
+
+}
@@ -0,0 +1,206 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the ConfigParser and RotorLibrary
+ *  classes.
+ *  @author Areeb Khalfay
+ */
+public class ConfigParserTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Return the library parsed from TEXT. */
+    private RotorLibrary parse(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        return new ConfigParser(new ChannelReader(
+            Channels.newChannel(new ByteArrayInputStream(bytes)))).parse();
+    }
+
+    /** Check that parsing TEXT fails with a message containing
+     *  POSITION. */
+    private void checkError(String text, String position) {
+        try {
+            parse(text);
+            fail("no error for " + text);
+        } catch (EnigmaException excp) {
+            assertTrue(excp.getMessage(),
+                       excp.getMessage().contains(position));
+        }
+    }
+
+    /** Check that LIBRARY is the one described by MainTest.CONFIG. */
+    private void checkNaval(RotorLibrary library) {
+        assertEquals(26, library.alphabet().size());
+        assertEquals(5, library.numRotors());
+        assertEquals(3, library.numPawls());
+        assertEquals(9, library.rotors().size());
+        for (Rotor rotor : library.rotors()) {
+            String name = rotor.name();
+            if (NAVALA_MAP.containsKey(name)) {
+                for (int i = 0; i < 26; i += 1) {
+                    assertEquals(NAVALA_MAP.get(name).charAt(i),
+                                 rotor.permutation().permute(
+                                     UPPER_STRING.charAt(i)));
+                }
+            }
+        }
+        Rotor first = library.rotors().get(0);
+        assertTrue(first.rotates());
+        assertEquals("Q", ((MovingRotor) first).notches());
+        assertTrue(library.rotors().get(8).reflecting());
+    }
+
+    @Test
+    public void checkNavalConfig() {
+        checkNaval(parse(MainTest.CONFIG));
+    }
+
+    @Test
+    public void checkSnapshotRoundTrip() throws IOException {
+        Path dir = Files.createTempDirectory("enigma");
+        String snapshot = dir.resolve("naval.bin").toString();
+        parse(MainTest.CONFIG).writeSnapshot(snapshot);
+        checkNaval(RotorLibrary.load(snapshot));
+    }
+
+    /** A configuration over an alphabet that is neither contiguous nor
+     *  within the Basic Multilingual Plane: A, C, E, an emoji, aleph and
+     *  a CJK ideograph. */
+    static final String SYMBOLS =
+        "ACE\ud83d\ude00\u05d0\u4e00\n3 2\n"
+        + "I M\ud83d\ude00 (AC\ud83d\ude00) (E\u4e00)\n"
+        + "II ME (\u05d0\u4e00A)\n"
+        + "B R (AE) (C\u4e00) (\ud83d\ude00\u05d0)\n";
+
+    /** Check that LIBRARY is the one described by SYMBOLS. */
+    private void checkSymbols(RotorLibrary library) {
+        Alphabet alphabet = library.alphabet();
+        assertEquals(6, alphabet.size());
+        assertEquals(0x1f600, alphabet.toCodePoint(3));
+        assertEquals(5, alphabet.toInt('\u4e00'));
+        Rotor first = library.rotors().get(0);
+        assertEquals("(AC\ud83d\ude00) (E\u4e00)",
+                     first.permutation().cycles());
+        assertEquals("\ud83d\ude00", ((MovingRotor) first).notches());
+        assertTrue(first.hasNotchAt(3));
+        assertFalse(first.hasNotchAt(2));
+        assertEquals("(A\u05d0\u4e00)",
+                     library.rotors().get(1).permutation().cycles());
+    }
+
+    @Test
+    public void checkCodePointAlphabet() throws IOException {
+        RotorLibrary library = parse(SYMBOLS);
+        checkSymbols(library);
+        Path dir = Files.createTempDirectory("enigma");
+        String snapshot = dir.resolve("symbols.bin").toString();
+        library.writeSnapshot(snapshot);
+        checkSymbols(RotorLibrary.load(snapshot));
+
+        Machine mach = new Machine(library.alphabet(), 3, 2,
+                                   library.rotors());
+        mach.insertRotors(new String[] { "B", "II", "I" });
+        mach.setRotors("\u05d0\ud83d\ude00");
+        String msg = "ACE \ud83d\ude00\u05d0\u4e00 ACE\u4e00";
+        String converted = mach.convert(msg);
+        assertEquals(msg.codePointCount(0, msg.length()),
+                     converted.codePointCount(0, converted.length()));
+        assertNotEquals(msg, converted);
+        mach.setRotors("\u05d0\ud83d\ude00");
+        assertEquals(msg, mach.convert(converted));
+    }
+
+    @Test
+    public void checkCodePointSpec() {
+        RotorLibrary library = parse(SYMBOLS);
+        Machine mach = new Machine(library.alphabet(), 3, 2,
+                                   library.rotors());
+        mach.insertRotors(new String[] { "B", "II", "I" });
+        mach.setRotors("\u05d0\ud83d\ude00");
+        MachineSpec spec = mach.spec();
+        MachineState state = spec.state("\u05d0\ud83d\ude00");
+        assertEquals(mach.state(), state);
+        String msg = "ACE \ud83d\ude00\u05d0\u4e00 ACE\u4e00";
+        assertEquals(mach.convert(msg), spec.convert(state, msg));
+        assertEquals(mach.state(), state);
+    }
+
+    @Test
+    public void checkCodePointParallel() {
+        Machine[] machines = new Machine[2];
+        for (int i = 0; i < machines.length; i += 1) {
+            RotorLibrary library = parse(SYMBOLS);
+            machines[i] = new Machine(library.alphabet(), 3, 2,
+                                      library.rotors());
+            machines[i].insertRotors(new String[] { "B", "II", "I" });
+            machines[i].setRotors("\u05d0\ud83d\ude00");
+        }
+        StringBuilder msg = new StringBuilder();
+        while (msg.length() < 3 * Machine.PARALLEL_CHUNK) {
+            msg.append("\ud83d\ude00A \u4e00");
+        }
+        assertTrue(Character.isLowSurrogate(
+            msg.charAt(Machine.PARALLEL_CHUNK)));
+        assertEquals(machines[0].convert(msg.toString()),
+                     machines[1].convertParallel(msg.toString()));
+        assertEquals(machines[0].state(), machines[1].state());
+    }
+
+    @Test
+    public void checkWideSnapshot() throws IOException {
+        int size = (1 << 16) + 10;
+        int[] symbols = new int[size];
+        int[] forward = new int[size];
+        for (int i = 0; i < size; i += 1) {
+            symbols[i] = 0x10000 + i;
+            forward[i] = (i + 1) % size;
+        }
+        Alphabet alphabet = new CodePointAlphabet(symbols);
+        List<Rotor> rotors = new ArrayList<>();
+        rotors.add(new FixedRotor("N", new Permutation(forward, alphabet)));
+        String snapshot = Files.createTempFile("enigma", ".bin").toString();
+        new RotorLibrary(alphabet, 1, 0, rotors).writeSnapshot(snapshot);
+        Permutation loaded =
+            RotorLibrary.load(snapshot).rotors().get(0).permutation();
+        assertEquals(size - 1, loaded.permute(size - 2));
+        assertEquals(0, loaded.permute(size - 1));
+        assertEquals(1 << 16, loaded.invert((1 << 16) + 1));
+    }
+
+    @Test
+    public void checkAlphabetErrors() {
+        checkError("ABCA\n5 3\n", "line 1, column 1");
+        checkError("ACE\n3 2\nI MB (AC)\n", "line 3, column 3");
+        checkError("ACE\ud83d\ude00\n3 2\nI M (A\ud83d\ude00B)\n",
+                   "line 3, column 8");
+    }
+
+    @Test
+    public void checkErrorPositions() {
+        checkError("A-Z\n5 x\n", "line 2, column 3");
+        checkError("A-Z\n5 3\nI MQ (AB) (CA)\n", "line 3, column 13");
+        checkError("A-Z\n5 3\nI MQ (AB\n", "line 3, column 6");
+        checkError("A-Z\n5 3\nI Q (AB)\n", "line 3, column 2");
+        checkError("A-Z\n5 3\nI M1 (AB)\n", "line 3, column 3");
+        checkError("A-Z\n5 3\nI MQ (AB)\nI MQ (AB)\n", "line 4, column 1");
+        checkError("A-Z\n5 3\nI\n", "truncated");
+    }
+
+}
@@ -0,0 +1,73 @@
+package enigma;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** Java Flight Recorder events emitted by Main and Machine, under the
+ *  category "Enigma".  They are always emitted, and cost no more than a
+ *  check of a flag while no recording is running (for example, one
+ *  started with -XX:StartFlightRecording).
+ *  @author Areeb Khalfay
+ */
+final class Events {
+
+    /** Not instantiable. */
+    private Events() {
+    }
+
+    /** Loading of a configuration file or snapshot. */
+    @Name("enigma.ConfigLoad")
+    @Label("Configuration Load")
+    @Category("Enigma")
+    static final class ConfigLoad extends Event {
+
+        /** Name of the file loaded. */
+        @Label("File")
+        String file;
+
+        /** Number of rotors it describes. */
+        @Label("Rotors")
+        int rotors;
+    }
+
+    /** Setting up of a machine from a settings line by Main.setUp. */
+    @Name("enigma.SetUp")
+    @Label("Settings Line")
+    @Category("Enigma")
+    static final class SetUp extends Event {
+
+        /** The settings line. */
+        @Label("Settings")
+        String settings;
+    }
+
+    /** Conversion of one message line by Main, including writing it. */
+    @Name("enigma.Message")
+    @Label("Message Line")
+    @Category("Enigma")
+    @Description("Conversion and output of one message line")
+    static final class Message extends Event {
+
+        /** Characters converted. */
+        @Label("Characters")
+        long characters;
+
+        /** Single rotor movements, if metrics are enabled. */
+        @Label("Rotor Steps")
+        long rotorSteps;
+
+        /** Double steps, if metrics are enabled. */
+        @Label("Double Steps")
+        long doubleSteps;
+
+        /** Bytes of output produced. */
+        @Label("Output")
+        @DataAmount
+        long bytes;
+    }
+
+}
@@ -13,4 +13,14 @@ class FixedRotor extends Rotor {
         super(name, perm);
     }
 
+    /** A copy of ORIGINAL, as for Rotor.copy(). */
+    FixedRotor(FixedRotor original) {
+        super(original);
+    }
+
+    @Override
+    FixedRotor copy() {
+        return new FixedRotor(this);
+    }
+
 }
@@ -0,0 +1,177 @@
+package enigma;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static enigma.EnigmaException.*;
+
+/** The output stage of Main: writes converted message lines in groups of
+ *  five letters, encoded as UTF-8 straight into one reusable buffer that
+ *  is written to a channel in large blocks.
+ *  @author Areeb Khalfay
+ */
+class GroupWriter {
+
+    /** A writer of groups to CHANNEL, which close() closes. */
+    GroupWriter(WritableByteChannel channel) {
+        this(channel, true);
+    }
+
+    /** A writer of groups to CHANNEL, which close() closes iff OWNED. */
+    private GroupWriter(WritableByteChannel channel, boolean owned) {
+        _channel = channel;
+        _owned = owned;
+    }
+
+    /** Return a writer to the file named NAME, replacing its contents. */
+    static GroupWriter open(String name) {
+        try {
+            return new GroupWriter(FileChannel.open(Paths.get(name),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING));
+        } catch (IOException | RuntimeException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Return a writer to the standard output, which is left open by
+     *  close(). */
+    static GroupWriter standardOutput() {
+        return new GroupWriter(Channels.newChannel(
+                new FileOutputStream(FileDescriptor.out)), false);
+    }
+
+    /** Write the first LEN characters of MSG, ignoring spaces, in groups
+     *  of five (except that the last group may have fewer letters),
+     *  continuing the groups of the current line. */
+    void write(char[] msg, int len) {
+        for (int i = 0; i < len; i++) {
+            char ch = msg[i];
+            if (ch == ' ') {
+                continue;
+            }
+            if (_buffer.remaining() < MAX_LETTER_BYTES) {
+                drain();
+            }
+            if (Character.isLowSurrogate(ch) && _highSurrogate != 0) {
+                putCodePoint(Character.toCodePoint(_highSurrogate, ch));
+                _highSurrogate = 0;
+                continue;
+            }
+            if (_groupLength == GROUP_SIZE) {
+                _buffer.put((byte) ' ');
+                _groupLength = 0;
+            }
+            _groupLength += 1;
+            if (Character.isHighSurrogate(ch)) {
+                _highSurrogate = ch;
+            } else {
+                putCodePoint(ch);
+            }
+        }
+    }
+
+    /** End the current line. */
+    void endLine() {
+        if (!_buffer.hasRemaining()) {
+            drain();
+        }
+        _buffer.put((byte) '\n');
+        _groupLength = 0;
+        _highSurrogate = 0;
+    }
+
+    /** Return the number of bytes produced so far, whether written to my
+     *  channel yet or still buffered. */
+    long bytes() {
+        return _drained + _buffer.position();
+    }
+
+    /** Write everything buffered so far to my channel. */
+    void flush() {
+        drain();
+    }
+
+    /** Flush and close my channel, unless it is the standard output. */
+    void close() {
+        flush();
+        if (!_owned) {
+            return;
+        }
+        try {
+            _channel.close();
+        } catch (IOException excp) {
+            throw error("could not close output");
+        }
+    }
+
+    /** Put the UTF-8 encoding of code point CP into _buffer. */
+    private void putCodePoint(int cp) {
+        if (cp < 0x80) {
+            _buffer.put((byte) cp);
+        } else if (cp < 0x800) {
+            _buffer.put((byte) (0xc0 | (cp >> 6)));
+            _buffer.put((byte) (0x80 | (cp & 0x3f)));
+        } else if (cp < 0x10000) {
+            _buffer.put((byte) (0xe0 | (cp >> 12)));
+            _buffer.put((byte) (0x80 | ((cp >> 6) & 0x3f)));
+            _buffer.put((byte) (0x80 | (cp & 0x3f)));
+        } else {
+            _buffer.put((byte) (0xf0 | (cp >> 18)));
+            _buffer.put((byte) (0x80 | ((cp >> 12) & 0x3f)));
+            _buffer.put((byte) (0x80 | ((cp >> 6) & 0x3f)));
+            _buffer.put((byte) (0x80 | (cp & 0x3f)));
+        }
+    }
+
+    /** Write the contents of _buffer to my channel and empty it. */
+    private void drain() {
+        _buffer.flip();
+        _drained += _buffer.remaining();
+        try {
+            while (_buffer.hasRemaining()) {
+                _channel.write(_buffer);
+            }
+        } catch (IOException excp) {
+            throw error("could not write output: %s", excp.getMessage());
+        }
+        _buffer.clear();
+    }
+
+    /** Number of letters in a full group. */
+    private static final int GROUP_SIZE = 5;
+
+    /** Most bytes written for one letter: a separating space and a
+     *  four-byte UTF-8 sequence. */
+    private static final int MAX_LETTER_BYTES = 5;
+
+    /** Size of the output buffer. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The channel I write to. */
+    private final WritableByteChannel _channel;
+
+    /** True iff close() should close _channel. */
+    private final boolean _owned;
+
+    /** Encoded output not yet written to _channel. */
+    private final ByteBuffer _buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    /** Number of bytes taken from _buffer to write to _channel. */
+    private long _drained;
+
+    /** Number of letters in the last group of the current line. */
+    private int _groupLength;
+
+    /** High surrogate of a letter whose low surrogate has not yet been
+     *  written, or 0. */
+    private char _highSurrogate;
+
+}
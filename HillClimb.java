@@ -0,0 +1,434 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+
+import static enigma.EnigmaException.*;
+
+/** A ciphertext-only attack.  Every rotor order and start position of a
+ *  library is first scored by the index of coincidence of the message it
+ *  decrypts without a plugboard, which is higher for keys near the right
+ *  one whatever the plugboard; the best of these are kept as candidates.
+ *  The plugboard of each candidate is then found by hill-climbing:
+ *  starting from an empty or random plugboard, any change of one pair of
+ *  plugs that raises the n-gram score of the decryption is kept, until
+ *  none does.  Each candidate is climbed from several starting
+ *  plugboards, all independently and in parallel, and the search stops
+ *  as soon as one decryption scores above a threshold.
+ *  @author Areeb Khalfay
+ */
+class HillClimb {
+
+    /** An attack on CIPHER, a string of letters of the alphabet of
+     *  LIBRARY, trying the rotor orders in ORDERS (each naming the rotor
+     *  of every slot, reflector first) and scoring decryptions with
+     *  NGRAMS. */
+    HillClimb(RotorLibrary library, List<String[]> orders, NGrams ngrams,
+              String cipher) {
+        if (cipher.length() < ngrams.n()) {
+            throw error("ciphertext is too short");
+        }
+        _library = library;
+        _orders = new ArrayList<>(orders);
+        _ngrams = ngrams;
+        _alphabet = library.alphabet();
+        _size = _alphabet.size();
+        _cipher = new int[cipher.length()];
+        for (int i = 0; i < _cipher.length; i += 1) {
+            _cipher[i] = _alphabet.toInt(cipher.charAt(i));
+        }
+    }
+
+    /** An attack trying every rotor order of LIBRARY (see
+     *  Bombe.rotorOrders). */
+    HillClimb(RotorLibrary library, NGrams ngrams, String cipher) {
+        this(library, Bombe.rotorOrders(library), ngrams, cipher);
+    }
+
+    /** Keep the COUNT rotor settings with the highest index of
+     *  coincidence as candidates. */
+    void setCandidates(int count) {
+        if (count <= 0) {
+            throw error("need at least one candidate");
+        }
+        _candidates = count;
+    }
+
+    /** Climb from RESTARTS starting plugboards for each candidate. */
+    void setRestarts(int restarts) {
+        if (restarts <= 0) {
+            throw error("need at least one restart");
+        }
+        _restarts = restarts;
+    }
+
+    /** Stop as soon as a decryption's mean n-gram score reaches
+     *  THRESHOLD. */
+    void setThreshold(double threshold) {
+        _threshold = threshold;
+    }
+
+    /** Return the number of trial decryptions made so far. */
+    long decryptions() {
+        return _decryptions.sum();
+    }
+
+    /** Return the trial decryptions made per second by each thread of
+     *  the pool used by the last call of solve(). */
+    double decryptionsPerSecondPerCore() {
+        long started = _started;
+        if (started == 0) {
+            return 0;
+        }
+        long end = _finished != 0 ? _finished : System.nanoTime();
+        return _decryptions.sum() * 1e9 / Math.max(1, end - started)
+            / _parallelism;
+    }
+
+    /** Return a one-line report of my progress. */
+    String report() {
+        return String.format("%d decryptions (%.0f/s per core)",
+                             decryptions(), decryptionsPerSecondPerCore());
+    }
+
+    /** Return the best decryption found, searching on the common
+     *  ForkJoinPool. */
+    Solution solve() {
+        return solve(ForkJoinPool.commonPool());
+    }
+
+    /** Return the best decryption found, searching on POOL. */
+    Solution solve(ForkJoinPool pool) {
+        _decryptions.reset();
+        _best = null;
+        _done = false;
+        _parallelism = pool.getParallelism();
+        _started = System.nanoTime();
+        _finished = 0;
+        List<Candidate> candidates = rank(pool);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            for (int restart = 0; restart < _restarts; restart += 1) {
+                final long seed = restart;
+                tasks.add(pool.submit(() -> climb(candidate, seed)));
+            }
+        }
+        joinAll(tasks);
+        _finished = System.nanoTime();
+        return _best;
+    }
+
+    /** Return the candidates with the highest index of coincidence, best
+     *  first, searching on POOL. */
+    List<Candidate> rank(ForkJoinPool pool) {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        List<PriorityQueue<Candidate>> found = new ArrayList<>();
+        for (String[] order : _orders) {
+            MachineSpec spec = _library.spec(order, null);
+            int positions = 1;
+            for (int slot = 2; slot < spec.numRotors(); slot += 1) {
+                positions *= _size;
+            }
+            for (int first = 0; first < _size; first += 1) {
+                PriorityQueue<Candidate> best = new PriorityQueue<>();
+                found.add(best);
+                final int from = first * positions;
+                final int to = from + positions;
+                tasks.add(pool.submit(() -> rank(spec, from, to, best)));
+            }
+        }
+        joinAll(tasks);
+        PriorityQueue<Candidate> best = new PriorityQueue<>();
+        for (PriorityQueue<Candidate> part : found) {
+            for (Candidate candidate : part) {
+                keep(best, candidate);
+            }
+        }
+        List<Candidate> result = new ArrayList<>(best);
+        result.sort((x, y) -> Double.compare(y._ioc, x._ioc));
+        return result;
+    }
+
+    /** Add to BEST the candidates among the start positions numbered FROM
+     *  to TO - 1 of SPEC's rotor order, evaluating them with the fastest
+     *  PositionKernel available. */
+    private void rank(MachineSpec spec, int from, int to,
+                      PriorityQueue<Candidate> best) {
+        PositionKernel kernel = PositionKernel.kernel(spec, _cipher);
+        long[] same = new long[RANK_BATCH];
+        double pairs = (double) _cipher.length * (_cipher.length - 1);
+        for (int index = from; index < to; index += RANK_BATCH) {
+            int count = Math.min(RANK_BATCH, to - index);
+            kernel.coincidences(index, count, same);
+            _decryptions.add(count);
+            for (int k = 0; k < count; k += 1) {
+                double ioc = same[k] / pairs;
+                if (best.size() < _candidates || ioc > best.peek()._ioc) {
+                    int[] start = new int[spec.numRotors()];
+                    kernel.decode(index + k, start);
+                    keep(best, new Candidate(spec, start, ioc));
+                }
+            }
+        }
+    }
+
+    /** Add CANDIDATE to BEST, dropping the worst if it holds too many. */
+    private void keep(PriorityQueue<Candidate> best, Candidate candidate) {
+        best.add(candidate);
+        if (best.size() > _candidates) {
+            best.poll();
+        }
+    }
+
+    /** Climb to a plugboard for CANDIDATE, starting from the empty
+     *  plugboard if SEED is 0 and from one chosen at random using SEED
+     *  otherwise. */
+    private void climb(Candidate candidate, long seed) {
+        int length = _cipher.length;
+        int[] scrambler = new int[length * _size];
+        int[] positions = candidate._start.clone();
+        for (int i = 0; i < length; i += 1) {
+            candidate._spec.stepping().step(positions);
+            candidate._spec.composePath(positions, scrambler, i * _size);
+        }
+        Random random = new Random(seed);
+        int[] plug = new int[_size];
+        int[] saved = new int[_size];
+        int[] text = new int[length];
+        for (int c = 0; c < _size; c += 1) {
+            plug[c] = c;
+        }
+        if (seed != 0) {
+            for (int k = random.nextInt(_size / 2 + 1); k > 0; k -= 1) {
+                connect(plug, random.nextInt(_size), random.nextInt(_size));
+            }
+        }
+        int[] letters = new int[_size];
+        for (int c = 0; c < _size; c += 1) {
+            letters[c] = c;
+        }
+        double best = score(scrambler, plug, text);
+        boolean improved = true;
+        while (improved && !_done) {
+            improved = false;
+            shuffle(letters, random);
+            for (int i = 0; i < _size && !_done; i += 1) {
+                for (int j = i + 1; j < _size; j += 1) {
+                    int a = letters[i], b = letters[j];
+                    System.arraycopy(plug, 0, saved, 0, _size);
+                    if (plug[a] == b) {
+                        plug[a] = a;
+                        plug[b] = b;
+                    } else {
+                        connect(plug, a, b);
+                    }
+                    double score = score(scrambler, plug, text);
+                    if (score > best) {
+                        best = score;
+                        improved = true;
+                    } else {
+                        System.arraycopy(saved, 0, plug, 0, _size);
+                    }
+                }
+            }
+        }
+        offer(candidate, plug, best / (length - _ngrams.n() + 1));
+    }
+
+    /** Plug A to B in PLUG, first unplugging both. */
+    private static void connect(int[] plug, int a, int b) {
+        plug[plug[a]] = plug[a];
+        plug[plug[b]] = plug[b];
+        plug[a] = b;
+        plug[b] = a;
+    }
+
+    /** Randomly reorder LETTERS using RANDOM. */
+    private static void shuffle(int[] letters, Random random) {
+        for (int i = letters.length - 1; i > 0; i -= 1) {
+            int j = random.nextInt(i + 1);
+            int t = letters[i];
+            letters[i] = letters[j];
+            letters[j] = t;
+        }
+    }
+
+    /** Return the n-gram score of the decryption of my ciphertext with the
+     *  scramblers SCRAMBLER and the plugboard PLUG, decrypting into
+     *  TEXT. */
+    private double score(int[] scrambler, int[] plug, int[] text) {
+        for (int i = 0; i < text.length; i += 1) {
+            text[i] = plug[scrambler[i * _size + plug[_cipher[i]]]];
+        }
+        _decryptions.increment();
+        return _ngrams.score(text, 0, text.length);
+    }
+
+    /** Record the decryption of CANDIDATE with plugboard PLUG, whose mean
+     *  n-gram score is SCORE, if it is the best so far. */
+    private synchronized void offer(Candidate candidate, int[] plug,
+                                    double score) {
+        if (_best != null && _best._score >= score) {
+            return;
+        }
+        Bombe.Stop key = Bombe.Stop.of(candidate._spec, candidate._start,
+                                       plug);
+        MachineSpec spec = _library.spec(key.order(),
+            new Permutation(plug, _alphabet));
+        char[] text = new char[_cipher.length];
+        for (int i = 0; i < text.length; i += 1) {
+            text[i] = _alphabet.toChar(_cipher[i]);
+        }
+        spec.convert(new MachineState(candidate._start.clone()), text, 0,
+                     text.length, text);
+        _best = new Solution(key, score, new String(text));
+        if (score >= _threshold) {
+            _done = true;
+        }
+    }
+
+    /** Wait for every task in TASKS, rethrowing the first failure. */
+    private static void joinAll(List<ForkJoinTask<?>> tasks) {
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    /** A rotor order and start position kept for hill-climbing. */
+    static class Candidate implements Comparable<Candidate> {
+
+        /** A candidate with the rotors of SPEC at START, whose decryption
+         *  without a plugboard has index of coincidence IOC. */
+        Candidate(MachineSpec spec, int[] start, double ioc) {
+            _spec = spec;
+            _start = start;
+            _ioc = ioc;
+        }
+
+        /** Return my key, without a plugboard. */
+        Bombe.Stop key() {
+            return Bombe.Stop.of(_spec, _start, new int[0]);
+        }
+
+        /** Return my index of coincidence. */
+        double ioc() {
+            return _ioc;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            return Double.compare(_ioc, other._ioc);
+        }
+
+        /** The rotor order. */
+        private final MachineSpec _spec;
+
+        /** The start positions. */
+        private final int[] _start;
+
+        /** The index of coincidence. */
+        private final double _ioc;
+    }
+
+    /** The best decryption found. */
+    static class Solution {
+
+        /** A solution with key KEY, mean n-gram score SCORE and decryption
+         *  PLAINTEXT. */
+        Solution(Bombe.Stop key, double score, String plaintext) {
+            _key = key;
+            _score = score;
+            _plaintext = plaintext;
+        }
+
+        /** Return my key. */
+        Bombe.Stop key() {
+            return _key;
+        }
+
+        /** Return my mean n-gram score. */
+        double score() {
+            return _score;
+        }
+
+        /** Return my decryption. */
+        String plaintext() {
+            return _plaintext;
+        }
+
+        @Override
+        public String toString() {
+            return _key + " " + _plaintext;
+        }
+
+        /** The key. */
+        private final Bombe.Stop _key;
+
+        /** The mean n-gram score. */
+        private final double _score;
+
+        /** The decryption. */
+        private final String _plaintext;
+    }
+
+    /** Number of start positions evaluated by each call of a
+     *  PositionKernel while ranking. */
+    private static final int RANK_BATCH = 256;
+
+    /** Default number of candidates climbed. */
+    static final int DEFAULT_CANDIDATES = 32;
+
+    /** Default number of starting plugboards per candidate. */
+    static final int DEFAULT_RESTARTS = 4;
+
+    /** The rotors tried. */
+    private final RotorLibrary _library;
+
+    /** Rotor orders tried. */
+    private final List<String[]> _orders;
+
+    /** Scores decryptions. */
+    private final NGrams _ngrams;
+
+    /** Alphabet of the library. */
+    private final Alphabet _alphabet;
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** The ciphertext. */
+    private final int[] _cipher;
+
+    /** Number of candidates climbed. */
+    private int _candidates = DEFAULT_CANDIDATES;
+
+    /** Number of starting plugboards per candidate. */
+    private int _restarts = DEFAULT_RESTARTS;
+
+    /** Mean n-gram score at which the search stops. */
+    private double _threshold = Double.POSITIVE_INFINITY;
+
+    /** Number of trial decryptions. */
+    private final LongAdder _decryptions = new LongAdder();
+
+    /** Best decryption so far, or null. */
+    private Solution _best;
+
+    /** True once a decryption has reached the threshold. */
+    private volatile boolean _done;
+
+    /** Number of threads of the pool searched on. */
+    private int _parallelism = 1;
+
+    /** Value of System.nanoTime() when solve() started, or 0. */
+    private volatile long _started;
+
+    /** Value of System.nanoTime() when solve() finished, or 0. */
+    private volatile long _finished;
+
+}
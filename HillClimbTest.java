@@ -0,0 +1,152 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** The suite of all JUnit tests for the NGrams and HillClimb classes.
+ *  @author Areeb Khalfay
+ */
+public class HillClimbTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /** English text used to train the n-gram scores. */
+    static final String CORPUS = String.join(" ",
+        "It was the best of times, it was the worst of times, it was the",
+        "age of wisdom, it was the age of foolishness, it was the epoch of",
+        "belief, it was the epoch of incredulity, it was the season of",
+        "light, it was the season of darkness, it was the spring of hope,",
+        "it was the winter of despair, we had everything before us, we had",
+        "nothing before us, we were all going direct to heaven, we were all",
+        "going direct the other way.  In short, the period was so far like",
+        "the present period, that some of its noisiest authorities insisted",
+        "on its being received, for good or for evil, in the superlative",
+        "degree of comparison only.  There were a king with a large jaw and",
+        "a queen with a plain face, on the throne of England; there were a",
+        "king with a large jaw and a queen with a fair face, on the throne",
+        "of France.  In both countries it was clearer than crystal to the",
+        "lords of the State preserves of loaves and fishes, that things in",
+        "general were settled for ever.  From his shoulder Hiawatha took",
+        "the camera of rosewood, made of sliding, folding rosewood; neatly",
+        "put it all together.  In its case it lay compactly, folded into",
+        "nearly nothing; but he opened out the hinges, pushed and pulled",
+        "the joints and hinges, till it looked all squares and oblongs,",
+        "like a complicated figure in the second book of Euclid.");
+
+    /** The message attacked. */
+    static final String MESSAGE =
+        "THEREWEREAKINGWITHALARGEJAWANDAQUEENWITHAPLAINFACEONTHETHRONEOF"
+        + "ENGLANDTHEREWEREAKINGWITHALARGEJAWANDAQUEENWITHAFAIRFACEONTHE"
+        + "THRONEOFFRANCEINBOTHCOUNTRIESITWASCLEARERTHANCRYSTALTOTHELORDS"
+        + "OFTHESTATEPRESERVESOFLOAVESANDFISHESTHATTHINGSINGENERALWERE"
+        + "SETTLEDFOREVER";
+
+    @Test
+    public void checkNGramScores() {
+        NGrams ngrams = NGrams.train(TestUtils.UPPER, 2, CORPUS);
+        int[] common = { 'T' - 'A', 'H' - 'A' };
+        int[] rare = { 'Q' - 'A', 'X' - 'A' };
+        assertTrue(ngrams.score(common, 0, 2) > ngrams.score(rare, 0, 2));
+        assertEquals(0, ngrams.score(common, 0, 1), 0);
+    }
+
+    @Test
+    public void checkTableFile() throws IOException {
+        Path dir = Files.createTempDirectory("enigma");
+        Path config = dir.resolve("naval.conf");
+        Path corpus = dir.resolve("corpus.txt");
+        String table = dir.resolve("trigrams.bin").toString();
+        Files.write(config, MainTest.CONFIG.getBytes(StandardCharsets.UTF_8));
+        Files.write(corpus, CORPUS.getBytes(StandardCharsets.UTF_8));
+        Main.main(Main.NGRAMS_OPTION, config.toString(), "3",
+                  corpus.toString(), table);
+
+        NGrams trained = NGrams.train(TestUtils.UPPER, 3, CORPUS);
+        NGrams mapped = NGrams.load(table, TestUtils.UPPER);
+        assertEquals(3, mapped.n());
+        for (int k = 0; k < 26 * 26 * 26; k += 1) {
+            assertEquals(trained.score(k), mapped.score(k), 0);
+        }
+
+        Machine mach = MachineTest.navalMachine(MachineTest.ROTORS, "AXLE",
+                                                MachineTest.PLUGBOARD);
+        char[] text = "FROM HIS SHOULDER HIAWATHA".toCharArray();
+        int[] letters = new int[text.length];
+        int length = 0;
+        for (char ch : text) {
+            if (ch != ' ') {
+                letters[length++] = ch - 'A';
+            }
+        }
+        assertEquals(mapped.score(letters, 0, length),
+                     mapped.score(text, 0, text.length), 1e-6);
+        mach.convert(text, 0, text.length, text);
+        assertTrue(mapped.score(text, 0, text.length)
+                   < mapped.score(letters, 0, length));
+    }
+
+    @Test
+    public void checkCodePointTable() throws IOException {
+        Alphabet alphabet =
+            CodePointAlphabet.of("ACE\ud83d\ude00\u05d0\u4e00");
+        String corpus = "ace\ud83d\ude00 \u05d0\u4e00ace "
+            + "\ud83d\ude00\ud83d\ude00a";
+        NGrams trained = NGrams.train(alphabet, 2, corpus);
+        byte[] bytes = corpus.getBytes(StandardCharsets.UTF_8);
+        NGrams streamed = NGrams.train(alphabet, 2, new ChannelReader(
+            Channels.newChannel(new ByteArrayInputStream(bytes))));
+        String table = Files.createTempFile("enigma", ".bin").toString();
+        trained.write(table);
+        NGrams mapped = NGrams.load(table, alphabet);
+        for (int k = 0; k < 6 * 6; k += 1) {
+            assertEquals(trained.score(k), streamed.score(k), 0);
+            assertEquals(trained.score(k), mapped.score(k), 0);
+        }
+        assertTrue(mapped.score(3 * 6 + 3) > mapped.score(1 * 6 + 1));
+        char[] text = "A\ud83d\ude00 \ud83d\ude00C".toCharArray();
+        int[] letters = { 0, 3, 3, 1 };
+        assertEquals(mapped.score(letters, 0, letters.length),
+                     mapped.score(text, 0, text.length), 1e-6);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkTableAlphabet() throws IOException {
+        String table = Files.createTempFile("enigma", ".bin").toString();
+        NGrams.train(TestUtils.UPPER, 2, CORPUS).write(table);
+        NGrams.load(table, new CharacterRange('A', 'Y'));
+    }
+
+    @Test
+    public void checkRecoversKey() {
+        RotorLibrary library = BombeTest.library(BombeTest.CONFIG);
+        Machine mach = library.machine();
+        mach.insertRotors(new String[] { "B", "III", "I", "II" });
+        mach.setRotors("KDO");
+        mach.setPlugboard(new Permutation("(AQ) (GT) (LS)",
+                                          library.alphabet()));
+        String cipher = mach.convert(MESSAGE);
+
+        HillClimb attack = new HillClimb(library,
+            NGrams.train(library.alphabet(), 2, CORPUS), cipher);
+        attack.setCandidates(8);
+        attack.setRestarts(2);
+        HillClimb.Solution solution = attack.solve();
+        assertEquals(MESSAGE, solution.plaintext());
+        assertEquals("* B III I II KDO (AQ) (GT) (LS)",
+                     solution.key().toString());
+        assertTrue(attack.decryptions() > 6 * 26 * 26 * 26);
+        assertTrue(attack.decryptionsPerSecondPerCore() > 0);
+    }
+
+}
@@ -1,9 +1,17 @@
 package enigma;
 
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
 import java.util.HashMap;
 import java.util.Collection;
 import java.util.ArrayList;
-import java.util.Scanner;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static enigma.EnigmaException.*;
 
 
 /**
@@ -26,6 +34,22 @@ class Machine {
         for (Rotor r : allRotors) {
             _allRotors.put(r.name().toUpperCase(), r);
         }
+        double keySpace = Math.pow(alpha.size(), numRotors - 1);
+        _keyFits = keySpace < Long.MAX_VALUE / 2;
+        _byteSymbols = byteSymbols(alpha);
+        setPathCacheCapacity(DEFAULT_PATH_CACHE_CAPACITY);
+    }
+
+    /**
+     * Return true iff every symbol of ALPHA is in the range 0-255.
+     */
+    private static boolean byteSymbols(Alphabet alpha) {
+        for (int i = 0; i < alpha.size(); i++) {
+            if (alpha.toCodePoint(i) > 0xff) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -42,6 +66,20 @@ class Machine {
         return _numPawls;
     }
 
+    /**
+     * Return my alphabet.
+     */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /**
+     * Return true iff I have a rotor named NAME, ignoring case.
+     */
+    boolean hasRotor(String name) {
+        return _allRotors.containsKey(name.toUpperCase());
+    }
+
     /**
      * Return the plugBoard.
      */
@@ -55,6 +93,8 @@ class Machine {
      * Initially, all rotors are set at their 0 setting.
      */
     void insertRotors(String[] rotors) {
+        resetKeystream();
+        _rotorsOrdered.clear();
         ArrayList<String> newRotors = new ArrayList<>();
         for (String preRotor : rotors) {
             newRotors.add(preRotor.toUpperCase());
@@ -67,6 +107,9 @@ class Machine {
                 }
             }
         }
+        _spec = null;
+        markStart();
+        clearPathCache();
     }
 
     /**
@@ -75,22 +118,289 @@ class Machine {
      * leftmost rotor setting (not counting the reflector).
      */
     void setRotors(String setting) {
-        assert setting.length() == numRotors() - 1;
-        for (int count = 0; count < setting.length(); count++) {
-            char ch = setting.charAt(count);
-            _settings.add(ch);
+        int[] symbols = setting.codePoints().toArray();
+        assert symbols.length == numRotors() - 1;
+        resetKeystream();
+        for (int index = 1; index < numRotors(); index++) {
+            _rotorsOrdered.get(index).set(_alphabet.toIndex(
+                    symbols[index - 1]));
+        }
+        markStart();
+    }
+
+    /**
+     * Insert the rotors of KEY, set them, and set my plugboard to its
+     * plugboard, as Main.setUp does for its settings line.  Rotors and a
+     * plugboard already in place are kept, with everything computed from
+     * them, so that returning to a recent key costs little more than
+     * setting the rotors.
+     */
+    void setUp(Settings key) {
+        String[] rotors = key.rotors();
+        boolean same = _rotorsOrdered.size() == rotors.length;
+        for (int index = 0; same && index < rotors.length; index++) {
+            same = _rotorsOrdered.get(index).name().equalsIgnoreCase(
+                    rotors[index]);
+        }
+        if (!same) {
+            insertRotors(rotors);
+        }
+        setRotors(key.setting());
+        if (_plugBoard != key.plugboard()) {
+            setPlugboard(key.plugboard());
+        }
+    }
+
+    /**
+     * Record the current rotor positions as the start of a message, so
+     * that offsets given to seek() count from here.
+     */
+    private void markStart() {
+        _offset = 0;
+        _orbit = null;
+        _orbitKnown = false;
+        if (_rotorsOrdered.size() < numRotors()) {
+            _startPositions = null;
+            return;
+        }
+        _startPositions = new int[numRotors()];
+        for (int index = 0; index < numRotors(); index++) {
+            _startPositions[index] = _rotorsOrdered.get(index).setting();
+        }
+    }
+
+    /**
+     * Return the number of characters converted since the rotors were
+     * last set (or the offset last passed to seek()).
+     */
+    long offset() {
+        return _offset;
+    }
+
+    /**
+     * Move the rotors to where they would be after converting OFFSET
+     * characters since they were last set, without converting anything.
+     * The cost does not grow with OFFSET: whole periods of the key are
+     * skipped, and so are runs of characters that only move the
+     * rightmost rotor.
+     */
+    void seek(long offset) {
+        if (offset < 0) {
+            throw error("negative message offset");
+        }
+        if (_startPositions == null) {
+            throw error("no rotors inserted");
+        }
+        if (_keystream != null && offset >= _keystreamOffset) {
+            long row = offset - _keystreamOffset;
+            if (row >= _keystreamRows) {
+                row = _keystreamMu + (row - _keystreamMu)
+                        % (_keystreamRows - _keystreamMu);
+            }
+            _keystreamRow = (int) row;
+            _offset = offset;
+            return;
+        }
+        resetKeystream();
+        if (!_orbitKnown) {
+            _orbit = stepping().orbit(_startPositions, SEEK_ORBIT_LIMIT);
+            _orbitKnown = true;
+        }
+        int[] positions = stepping().seek(_startPositions, offset, _orbit);
+        for (int index = 1; index < numRotors(); index++) {
+            _rotorsOrdered.get(index).set(positions[index]);
         }
+        _offset = offset;
+    }
+
+    /**
+     * Return a checkpoint of my current key: the rotors in my slots,
+     * their positions now and when last set, the number of characters
+     * converted since then, and my plugboard.  It takes a few dozen bytes
+     * and may be saved anywhere; resume() restores it in constant time on
+     * this or any machine configured with the same rotors.
+     */
+    byte[] checkpoint() {
+        if (_startPositions == null) {
+            throw error("no rotors inserted");
+        }
+        int[] positions = state().positions();
+        List<String> names = rotorNames();
+        ByteBuffer out = ByteBuffer.allocate(
+            CHECKPOINT_HEADER + (3 * numRotors() + 1 + 2 * _alphabet.size())
+            * VARINT_BYTES + VARLONG_BYTES);
+        out.put(CHECKPOINT_VERSION).putInt(fingerprint(names));
+        for (int index = 0; index < numRotors(); index++) {
+            String name = _rotorsOrdered.get(index).name().toUpperCase();
+            putVarLong(out, names.indexOf(name));
+            putVarLong(out, _startPositions[index]);
+            putVarLong(out, positions[index]);
+        }
+        putVarLong(out, _offset);
+        int moved = 0;
+        for (int c = 0; c < _alphabet.size(); c++) {
+            if (_plugBoard != null && _plugBoard.permute(c) != c) {
+                moved += 1;
+            }
+        }
+        putVarLong(out, _plugBoard == null ? 0 : moved + 1);
+        for (int c = 0; c < _alphabet.size() && moved > 0; c++) {
+            if (_plugBoard.permute(c) != c) {
+                putVarLong(out, c);
+                putVarLong(out, _plugBoard.permute(c));
+            }
+        }
+        return Arrays.copyOf(out.array(), out.position());
+    }
+
+    /**
+     * Restore the key saved in CHECKPOINT, as returned by checkpoint() on
+     * a machine with the same rotors, so that conversion and seek()
+     * continue exactly where they left off.
+     */
+    void resume(byte[] checkpoint) {
+        List<String> names = rotorNames();
+        ByteBuffer in = ByteBuffer.wrap(checkpoint);
+        String[] rotors = new String[numRotors()];
+        int[] start = new int[numRotors()];
+        int[] positions = new int[numRotors()];
+        int[] plugboard = new int[_alphabet.size()];
+        boolean plugged;
+        long offset;
+        try {
+            if (in.get() != CHECKPOINT_VERSION) {
+                throw error("unsupported machine checkpoint");
+            }
+            if (in.getInt() != fingerprint(names)) {
+                throw error("checkpoint is for another configuration");
+            }
+            for (int index = 0; index < numRotors(); index++) {
+                rotors[index] = names.get(getIndex(in, names.size()));
+                start[index] = getIndex(in, _alphabet.size());
+                positions[index] = getIndex(in, _alphabet.size());
+            }
+            offset = getVarLong(in);
+            for (int c = 0; c < plugboard.length; c++) {
+                plugboard[c] = c;
+            }
+            long moved = getVarLong(in) - 1;
+            plugged = moved >= 0;
+            for (; moved > 0; moved--) {
+                int c = getIndex(in, plugboard.length);
+                plugboard[c] = getIndex(in, plugboard.length);
+            }
+        } catch (BufferUnderflowException excp) {
+            throw error("truncated machine checkpoint");
+        }
+        if (in.hasRemaining() || offset < 0) {
+            throw error("corrupt machine checkpoint");
+        }
+        Permutation perm =
+            plugged ? new Permutation(plugboard, _alphabet) : null;
+        insertRotors(rotors);
         for (int index = 1; index < numRotors(); index++) {
-            char setting2 = _settings.get(index - 1);
-            _rotorsOrdered.get(index).set(setting2);
+            _rotorsOrdered.get(index).set(positions[index]);
         }
+        setPlugboard(perm);
+        _startPositions = start;
+        _offset = offset;
+    }
+
+    /**
+     * Return the upper-case names of all my available rotors, sorted,
+     * by which checkpoints identify rotors.
+     */
+    private List<String> rotorNames() {
+        ArrayList<String> names = new ArrayList<>(_allRotors.keySet());
+        names.sort(null);
+        return names;
+    }
+
+    /**
+     * Return a hash of my configuration, by which checkpoints are matched
+     * to machines: the shape of the machine, the code points of my
+     * alphabet, and the name, kind, notches and wiring of each of my
+     * available rotors, taken in the order of NAMES, as returned by
+     * rotorNames().
+     */
+    private int fingerprint(List<String> names) {
+        if (_fingerprint == null) {
+            long hash = FNV_BASIS;
+            hash = mix(hash, numRotors());
+            hash = mix(hash, numPawls());
+            hash = mix(hash, _alphabet.size());
+            for (int c = 0; c < _alphabet.size(); c++) {
+                hash = mix(hash, _alphabet.toCodePoint(c));
+            }
+            for (String name : names) {
+                Rotor rotor = _allRotors.get(name);
+                hash = mix(hash, name.hashCode());
+                hash = mix(hash, rotor.reflecting() ? 'R'
+                           : rotor.rotates() ? 'M' : 'N');
+                for (int c = 0; c < _alphabet.size(); c++) {
+                    hash = mix(hash, rotor.permutation().permute(c));
+                    hash = mix(hash, rotor.hasNotchAt(c) ? 1 : 0);
+                }
+            }
+            _fingerprint = (int) (hash ^ (hash >>> 32));
+        }
+        return _fingerprint;
+    }
+
+    /**
+     * Return HASH with X folded into it, as by FNV-1a.
+     */
+    private static long mix(long hash, int x) {
+        return (hash ^ x) * FNV_PRIME;
+    }
+
+    /**
+     * Put X into OUT as an unsigned variable-length number, seven bits
+     * to a byte, low bits first.
+     */
+    private static void putVarLong(ByteBuffer out, long x) {
+        while ((x & ~0x7fL) != 0) {
+            out.put((byte) ((x & 0x7f) | 0x80));
+            x >>>= 7;
+        }
+        out.put((byte) x);
+    }
+
+    /**
+     * Return the next number put into IN by putVarLong.
+     */
+    private static long getVarLong(ByteBuffer in) {
+        long x = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            byte b = in.get();
+            x |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return x;
+            }
+        }
+        throw error("corrupt machine checkpoint");
+    }
+
+    /**
+     * Return the next number put into IN by putVarLong, checking that it
+     * is less than LIMIT.
+     */
+    private static int getIndex(ByteBuffer in, int limit) {
+        long x = getVarLong(in);
+        if (x >= limit) {
+            throw error("corrupt machine checkpoint");
+        }
+        return (int) x;
     }
 
     /**
      * Set the plugboard to PLUGBOARD.
      */
     void setPlugboard(Permutation plugBoard) {
+        resetKeystream();
         _plugBoard = plugBoard;
+        _spec = null;
+        clearPathCache();
     }
 
     /**
@@ -99,18 +409,86 @@ class Machine {
      * the machine.
      */
     int convert(int c) {
-        int cPreliminary = c;
+        _offset += 1;
+        if (_keystreamBudget > 0) {
+            if (_keystream == null && !_keystreamFailed) {
+                buildKeystream();
+            }
+            if (_keystream != null) {
+                int row = _keystreamRow + 1;
+                if (row == _keystreamRows) {
+                    row = _keystreamMu;
+                }
+                _keystreamRow = row;
+                return _keystream[row * _alphabet.size() + c];
+            }
+        }
         for (int i = numRotors() - 1; i > numPawls() - 1; i--) {
             if (_rotorsOrdered.get(i).atNotch()) {
-                _rotorsOrdered.get(i - 1).advance();
+                advance(i - 1);
             }
             if (_rotorsOrdered.get(i - 1).atNotch()) {
-                _rotorsOrdered.get(i - 1).advance();
-                _rotorsOrdered.get(i - 2).advance();
+                advance(i - 1);
+                advance(i - 2);
+                if (Metrics.ENABLED) {
+                    _doubleSteps += 1;
+                }
             }
         }
-        _rotorsOrdered.get(_numRotors - 1).advance();
+        advance(_numRotors - 1);
+        return lookupPath(c);
+    }
 
+    /**
+     * Advance the rotor in SLOT, counting the step if Metrics are
+     * enabled.
+     */
+    private void advance(int slot) {
+        Rotor rotor = _rotorsOrdered.get(slot);
+        rotor.advance();
+        if (Metrics.ENABLED && rotor.rotates()) {
+            _rotorSteps += 1;
+        }
+    }
+
+    /**
+     * Return the number of single rotor movements I have made while
+     * Metrics were enabled (always 0 otherwise).  Movements skipped by
+     * seek() or read from a keystream table are not counted.
+     */
+    long rotorSteps() {
+        return _rotorSteps;
+    }
+
+    /**
+     * Return the number of double steps I have made while Metrics were
+     * enabled, counted like rotorSteps().
+     */
+    long doubleSteps() {
+        return _doubleSteps;
+    }
+
+    /**
+     * Report LETTERS characters converted, and the rotor steps made since
+     * the last report, to the global Metrics.
+     */
+    private void report(long letters) {
+        Metrics metrics = Metrics.global();
+        metrics.add(Metrics.CHARACTERS, letters);
+        metrics.add(Metrics.ROTOR_STEPS, _rotorSteps - _reportedSteps);
+        metrics.add(Metrics.DOUBLE_STEPS,
+                    _doubleSteps - _reportedDoubleSteps);
+        _reportedSteps = _rotorSteps;
+        _reportedDoubleSteps = _doubleSteps;
+    }
+
+    /**
+     * Returns the result of sending C through the plugboard, the rotors,
+     * the reflector and back again at the current rotor positions,
+     * without advancing the machine.
+     */
+    private int signalPath(int c) {
+        int cPreliminary = c;
         if (_plugBoard != null) {
             cPreliminary = _plugBoard.permute(c);
         }
@@ -128,31 +506,451 @@ class Machine {
         return cPreliminary;
     }
 
+    /**
+     * Returns signalPath(C), using the memoized output for C at the
+     * current rotor positions when there is one.  A state only gets a
+     * table the second time it is seen, so that traffic that never
+     * repeats a state pays nothing for the cache, and each entry of that
+     * table is filled the first time its input is converted there.
+     */
+    private int lookupPath(int c) {
+        if (_pathTables == null) {
+            return signalPath(c);
+        }
+        long key = stateKey();
+        if (key < 0) {
+            return signalPath(c);
+        }
+        int slot = (int) ((key * PATH_HASH) >>> _pathShift);
+        if (_pathKeys[slot] != key + 1) {
+            _pathKeys[slot] = key + 1;
+            _pathReady[slot] = false;
+            return signalPath(c);
+        }
+        int[] path = _pathTables[slot];
+        if (!_pathReady[slot]) {
+            if (path == null) {
+                path = new int[_alphabet.size()];
+                _pathTables[slot] = path;
+            }
+            Arrays.fill(path, -1);
+            _pathReady[slot] = true;
+        }
+        if (path[c] < 0) {
+            path[c] = signalPath(c);
+        }
+        return path[c];
+    }
+
+    /**
+     * Returns the current rotor positions encoded as a single number, or
+     * -1 if they do not fit in a long.
+     */
+    private long stateKey() {
+        if (!_keyFits) {
+            return -1;
+        }
+        long key = 0;
+        int size = _alphabet.size();
+        for (int index = 1; index < numRotors(); index++) {
+            key = key * size + _rotorsOrdered.get(index).setting();
+        }
+        return key;
+    }
+
+    /**
+     * Bound the memoized signal-path cache to CAPACITY states (rounded up
+     * to a power of two), or disable it if CAPACITY is 0.  At most
+     * CAPACITY * alphabet size ints are held.
+     */
+    void setPathCacheCapacity(int capacity) {
+        if (capacity < 0) {
+            throw error("negative path cache capacity");
+        }
+        if (capacity == 0) {
+            _pathKeys = null;
+            _pathTables = null;
+            _pathReady = null;
+            return;
+        }
+        int slots = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        _pathKeys = new long[slots];
+        _pathTables = new int[slots][];
+        _pathReady = new boolean[slots];
+        _pathShift = Long.SIZE - Integer.numberOfTrailingZeros(slots);
+    }
+
+    /**
+     * Precompute the whole keystream of the current key, as long as the
+     * table (one row of alphabet size outputs plus the rotor positions
+     * for every state before the machine repeats) fits in BYTES; a
+     * budget of 0 turns the keystream table off.  Keys whose period does
+     * not fit use the normal conversion path.
+     */
+    void setKeystreamBudget(long bytes) {
+        if (bytes < 0) {
+            throw error("negative keystream budget");
+        }
+        resetKeystream();
+        _keystreamBudget = bytes;
+    }
+
+    /**
+     * Return the period of the current keystream table, or 0 if there
+     * is none.
+     */
+    long keystreamPeriod() {
+        if (_keystream == null) {
+            return 0;
+        }
+        return _keystreamRows - _keystreamMu;
+    }
+
+    /**
+     * Precompute the output of every input symbol for every state the
+     * machine passes through from its current rotor positions until it
+     * repeats a state, or record that this would exceed the budget.
+     */
+    private void buildKeystream() {
+        Stepping stepping = stepping();
+        int size = _alphabet.size();
+        int[] state = new int[numRotors()];
+        for (int index = 0; index < numRotors(); index++) {
+            state[index] = _rotorsOrdered.get(index).setting();
+        }
+        long rowBytes = (long) (size + numRotors()) * Integer.BYTES;
+        long[] orbit = stepping.orbit(state, _keystreamBudget / rowBytes);
+        if (orbit == null) {
+            _keystreamFailed = true;
+            return;
+        }
+        int rows = (int) (orbit[0] + orbit[1]);
+        int[] table = new int[rows * size];
+        int[] states = new int[rows * numRotors()];
+        for (int row = 0; row < rows; row++) {
+            System.arraycopy(state, 0, states, row * numRotors(),
+                    numRotors());
+            spec().composePath(state, table, row * size);
+            stepping.step(state);
+        }
+        _keystream = table;
+        _keystreamStates = states;
+        _keystreamOffset = _offset - 1;
+        _keystreamMu = (int) orbit[0];
+        _keystreamRows = rows;
+        _keystreamRow = 0;
+    }
+
+    /**
+     * Drop the keystream table, first moving my rotors to the state the
+     * table had reached so that conversion can continue without it.
+     */
+    private void resetKeystream() {
+        if (_keystream != null) {
+            int base = _keystreamRow * numRotors();
+            for (int index = 1; index < numRotors(); index++) {
+                _rotorsOrdered.get(index).set(_keystreamStates[base + index]);
+            }
+        }
+        _keystream = null;
+        _keystreamStates = null;
+        _keystreamFailed = false;
+    }
+
+    /**
+     * Return the spec of my inserted rotors and plugboard, which is
+     * shared by the sessions built from it and never changes.
+     */
+    MachineSpec spec() {
+        if (_spec == null) {
+            if (_rotorsOrdered.size() < numRotors()) {
+                throw error("no rotors inserted");
+            }
+            _spec = new MachineSpec(_alphabet, numPawls(),
+                    _rotorsOrdered.subList(0, numRotors()), _plugBoard);
+        }
+        return _spec;
+    }
+
+    /**
+     * Return a new state holding my current rotor positions, to be
+     * converted with spec().  Converting with it leaves me unchanged.
+     */
+    MachineState state() {
+        int[] positions = new int[numRotors()];
+        if (_keystream != null) {
+            System.arraycopy(_keystreamStates, _keystreamRow * numRotors(),
+                    positions, 0, numRotors());
+        } else {
+            for (int index = 0; index < numRotors(); index++) {
+                positions[index] = _rotorsOrdered.get(index).setting();
+            }
+        }
+        return new MachineState(positions);
+    }
+
+    /**
+     * Return the stepping model of my inserted rotors.
+     */
+    private Stepping stepping() {
+        return spec().stepping();
+    }
+
+    /**
+     * Forget every memoized signal path, since the rotors or plugboard
+     * they were composed from have changed.
+     */
+    private void clearPathCache() {
+        if (_pathKeys != null) {
+            Arrays.fill(_pathKeys, 0);
+            Arrays.fill(_pathReady, false);
+        }
+    }
+
     /**
      * Returns the encoding/decoding of MSG, updating the state of
      * the rotors accordingly.
      */
     String convert(String msg) {
-        Scanner message = new Scanner(msg).useDelimiter("");
-        StringBuilder convertedString = new StringBuilder();
-        while (message.hasNext()) {
-            String buffer = message.next();
-            if (buffer.equals(" ")) {
-                convertedString.append(" ");
+        if (!_alphabet.bmp()) {
+            long start = _offset;
+            StringBuilder result = new StringBuilder(msg.length());
+            for (int ch : msg.codePoints().toArray()) {
+                if (ch == ' ') {
+                    result.append(' ');
+                } else {
+                    result.appendCodePoint(_alphabet.toCodePoint(
+                            convert(_alphabet.toIndex(ch))));
+                }
+            }
+            if (Metrics.ENABLED) {
+                report(_offset - start);
+            }
+            return result.toString();
+        }
+        char[] converted = msg.toCharArray();
+        convert(converted, 0, converted.length, converted);
+        return new String(converted);
+    }
+
+    /**
+     * Convert the LEN characters of IN starting at OFF into the same
+     * positions of OUT (which may be IN), updating the state of the rotors
+     * accordingly.  Spaces are copied unchanged and do not advance the
+     * rotors.  My alphabet's symbols must be single characters (see
+     * Alphabet.bmp).  Allocates nothing.
+     */
+    void convert(char[] in, int off, int len, char[] out) {
+        long start = _offset;
+        for (int i = off; i < off + len; i++) {
+            char ch = in[i];
+            if (ch == ' ') {
+                out[i] = ' ';
             } else {
-                int next = _alphabet.toInt(buffer.charAt(0));
-                convertedString.append(_alphabet.toChar(convert(next)));
+                out[i] = _alphabet.toChar(convert(_alphabet.toInt(ch)));
             }
         }
-        String convertedmessage = convertedString.toString();
-        return convertedmessage;
+        if (Metrics.ENABLED) {
+            report(_offset - start);
+        }
     }
 
+    /**
+     * Convert the remaining bytes of IN, each taken as a character in the
+     * range 0-255, writing one byte per character to OUT and updating the
+     * state of the rotors accordingly.  Spaces are copied unchanged and do
+     * not advance the rotors.  Every symbol of my alphabet must be such
+     * a character.  Allocates nothing.
+     */
+    void convert(ByteBuffer in, ByteBuffer out) {
+        if (!_byteSymbols) {
+            throw error("alphabet has symbols that do not fit in a byte");
+        }
+        if (out.remaining() < in.remaining()) {
+            throw error("output buffer too small");
+        }
+        long start = _offset;
+        while (in.hasRemaining()) {
+            char ch = (char) (in.get() & 0xff);
+            if (ch == ' ') {
+                out.put((byte) ' ');
+            } else {
+                out.put((byte) _alphabet.toChar(
+                        convert(_alphabet.toInt(ch))));
+            }
+        }
+        if (Metrics.ENABLED) {
+            report(_offset - start);
+        }
+    }
+
+    /**
+     * Returns the encoding/decoding of MSG exactly as convert(MSG) would,
+     * updating the state of the rotors accordingly, but converting
+     * chunks of MSG concurrently on the common ForkJoinPool.
+     */
+    String convertParallel(String msg) {
+        return convertParallel(msg, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Returns the encoding/decoding of MSG exactly as convert(MSG) would,
+     * updating the state of the rotors accordingly, but converting
+     * chunks of MSG concurrently on POOL.  Each chunk seeks its own copy
+     * of the rotor positions to the number of letters before it, so no
+     * chunk waits for another.
+     */
+    String convertParallel(String msg, ForkJoinPool pool) {
+        int[] bounds = chunks(msg);
+        int chunks = bounds.length - 1;
+        if (chunks < 2) {
+            return convert(msg);
+        }
+        resetKeystream();
+        MachineSpec spec = spec();
+        Stepping stepping = spec.stepping();
+        int[] start = new int[numRotors()];
+        for (int index = 0; index < numRotors(); index++) {
+            start[index] = _rotorsOrdered.get(index).setting();
+        }
+
+        long[] letters = new long[chunks + 1];
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int k = 0; k < chunks; k++) {
+            final int chunk = k;
+            tasks.add(pool.submit(() -> {
+                letters[chunk + 1] =
+                    countLetters(msg, bounds[chunk], bounds[chunk + 1]);
+            }));
+        }
+        joinAll(tasks);
+        for (int k = 0; k < chunks; k++) {
+            letters[k + 1] += letters[k];
+        }
+
+        long[] orbit = stepping.orbit(start, SEEK_ORBIT_LIMIT);
+        String[] out = new String[chunks];
+        long[][] steps = new long[chunks][];
+        tasks.clear();
+        for (int k = 0; k < chunks; k++) {
+            final int chunk = k;
+            if (Metrics.ENABLED) {
+                steps[chunk] = new long[2];
+            }
+            tasks.add(pool.submit(() -> {
+                int[] positions = stepping.seek(start, letters[chunk], orbit);
+                out[chunk] = convertChunk(spec, msg, bounds[chunk],
+                                          bounds[chunk + 1], positions,
+                                          steps[chunk]);
+            }));
+        }
+        joinAll(tasks);
+
+        int[] end = stepping.seek(start, letters[chunks], orbit);
+        for (int index = 1; index < numRotors(); index++) {
+            _rotorsOrdered.get(index).set(end[index]);
+        }
+        _offset += letters[chunks];
+        if (Metrics.ENABLED) {
+            for (long[] counts : steps) {
+                _rotorSteps += counts[0];
+                _doubleSteps += counts[1];
+            }
+            report(letters[chunks]);
+        }
+        return String.join("", out);
+    }
+
+    /**
+     * Return the bounds of the chunks of MSG converted by separate tasks:
+     * chunk K runs from index K to index K + 1 of the result.  Chunks
+     * are about PARALLEL_CHUNK characters long and do not split a
+     * surrogate pair.
+     */
+    private static int[] chunks(String msg) {
+        int chunks = (msg.length() + PARALLEL_CHUNK - 1) / PARALLEL_CHUNK;
+        int[] bounds = new int[chunks + 1];
+        for (int k = 1; k < chunks; k++) {
+            int bound = k * PARALLEL_CHUNK;
+            if (Character.isHighSurrogate(msg.charAt(bound - 1))
+                && Character.isLowSurrogate(msg.charAt(bound))) {
+                bound += 1;
+            }
+            bounds[k] = bound;
+        }
+        bounds[chunks] = msg.length();
+        return bounds;
+    }
+
+    /**
+     * Return the number of non-space symbols of MSG between indices FROM
+     * and TO.
+     */
+    private static long countLetters(String msg, int from, int to) {
+        long count = 0;
+        for (int i = from; i < to; ) {
+            int ch = msg.codePointAt(i);
+            if (ch != ' ') {
+                count += 1;
+            }
+            i += Character.charCount(ch);
+        }
+        return count;
+    }
+
+    /**
+     * Return the conversion with SPEC of the part of MSG between indices
+     * FROM and TO, starting with the rotors at POSITIONS and stepping them
+     * as convert(int) does.  Unless STEPS is null, add the rotor steps and
+     * double steps made to it, as Stepping.countStep does.
+     */
+    private String convertChunk(MachineSpec spec, String msg, int from,
+                                int to, int[] positions, long[] steps) {
+        Stepping stepping = spec.stepping();
+        StringBuilder out = new StringBuilder(to - from);
+        for (int i = from; i < to; ) {
+            int ch = msg.codePointAt(i);
+            if (ch == ' ') {
+                out.append(' ');
+            } else {
+                int next = _alphabet.toIndex(ch);
+                if (steps == null) {
+                    stepping.step(positions);
+                } else {
+                    stepping.countStep(positions, steps);
+                }
+                out.appendCodePoint(_alphabet.toCodePoint(
+                        spec.path(positions, next)));
+            }
+            i += Character.charCount(ch);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Wait for every task in TASKS, rethrowing the first failure.
+     */
+    private static void joinAll(List<ForkJoinTask<?>> tasks) {
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    /**
+     * Number of characters of a message converted by each parallel task.
+     */
+    static final int PARALLEL_CHUNK = 1 << 16;
+
     /**
      * Common alphabet of my rotors.
      */
     private final Alphabet _alphabet;
 
+    /**
+     * True iff every symbol of _alphabet fits in a byte.
+     */
+    private final boolean _byteSymbols;
+
     /**
      * Number of Rotors in this Enigma Machine Object.
      */
@@ -174,13 +972,172 @@ class Machine {
     private ArrayList<Rotor> _rotorsOrdered = new ArrayList<>();
 
     /**
-     * Settings for the Rotors.
+     * PlugBoard Permuation.
      */
-    private ArrayList<Character> _settings = new ArrayList<>();
+    private Permutation _plugBoard;
 
     /**
-     * PlugBoard Permuation.
+     * Default number of rotor-position states whose signal path is
+     * memoized.
      */
-    private Permutation _plugBoard;
+    static final int DEFAULT_PATH_CACHE_CAPACITY = 1 << 14;
+
+    /**
+     * Multiplier used to spread state keys over the path cache slots.
+     */
+    private static final long PATH_HASH = 0x9E3779B97F4A7C15L;
+
+    /**
+     * True iff every vector of rotor positions can be encoded as a long.
+     */
+    private boolean _keyFits;
+
+    /**
+     * State key + 1 held by each slot of the path cache, 0 if empty.
+     */
+    private long[] _pathKeys;
+
+    /**
+     * Signal path table of each slot of the path cache, reused when the
+     * slot is taken over by another state; null until first needed.
+     */
+    private int[][] _pathTables;
+
+    /**
+     * True for each slot whose table belongs to the state in the same
+     * slot of _pathKeys; its entries are -1 until first converted.
+     */
+    private boolean[] _pathReady;
+
+    /**
+     * Shift that turns a hashed state key into a path cache slot.
+     */
+    private int _pathShift;
+
+    /**
+     * Spec of the inserted rotors and plugboard, or null if not yet
+     * built.
+     */
+    private MachineSpec _spec;
+
+    /**
+     * Largest keystream table, in bytes, that may be built; 0 if the
+     * keystream table is off.
+     */
+    private long _keystreamBudget;
+
+    /**
+     * Output of each input symbol in each state of the current key's
+     * keystream, indexed by row * alphabet size + input; null if there
+     * is no table.
+     */
+    private int[] _keystream;
+
+    /**
+     * Rotor positions of each row of _keystream, numRotors() per row.
+     */
+    private int[] _keystreamStates;
+
+    /**
+     * Row at which the keystream starts repeating.
+     */
+    private int _keystreamMu;
+
+    /**
+     * Number of rows in _keystream; the row after the last is _keystreamMu.
+     */
+    private int _keystreamRows;
+
+    /**
+     * Row of _keystream holding the current rotor positions.
+     */
+    private int _keystreamRow;
+
+    /**
+     * True iff the current key's keystream did not fit in the budget.
+     */
+    private boolean _keystreamFailed;
+
+    /**
+     * Message offset of the state in row 0 of _keystream.
+     */
+    private long _keystreamOffset;
+
+    /**
+     * First byte of a checkpoint: its format version.
+     */
+    private static final byte CHECKPOINT_VERSION = 2;
+
+    /**
+     * Offset basis and prime of the 64-bit FNV-1a hash.
+     */
+    private static final long FNV_BASIS = 0xcbf29ce484222325L,
+        FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Fingerprint of my configuration, once computed.
+     */
+    private Integer _fingerprint;
+
+    /**
+     * Bytes of a checkpoint before its first variable-length number.
+     */
+    private static final int CHECKPOINT_HEADER = 1 + Integer.BYTES;
+
+    /**
+     * Most bytes taken by an int written by putVarLong.
+     */
+    private static final int VARINT_BYTES = 5;
+
+    /**
+     * Most bytes taken by a long written by putVarLong.
+     */
+    private static final int VARLONG_BYTES = 10;
+
+    /**
+     * Largest tail plus period of a key that seek() will search for.
+     */
+    private static final long SEEK_ORBIT_LIMIT = 1 << 22;
+
+    /**
+     * Rotor positions of every slot when the rotors were last set.
+     */
+    private int[] _startPositions;
+
+    /**
+     * Characters converted since the rotors were last set.
+     */
+    private long _offset;
+
+    /**
+     * Tail and period of the key starting at _startPositions, or null if
+     * unknown or too long.
+     */
+    private long[] _orbit;
+
+    /**
+     * True iff _orbit has been searched for since the rotors were set.
+     */
+    private boolean _orbitKnown;
+
+    /**
+     * Single rotor movements made while Metrics were enabled.
+     */
+    private long _rotorSteps;
+
+    /**
+     * Double steps made while Metrics were enabled.
+     */
+    private long _doubleSteps;
+
+    /**
+     * Value of _rotorSteps at the last report to Metrics.
+     */
+    private long _reportedSteps;
+
+    /**
+     * Value of _doubleSteps at the last report to Metrics.
+     */
+    private long _reportedDoubleSteps;
 
 }
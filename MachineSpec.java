@@ -0,0 +1,245 @@
+package enigma;
+
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** The fixed part of an Enigma machine: its alphabet, the rotors in its
+ *  slots (as precomputed conversion tables) and its plugboard.  A spec
+ *  never changes once built, so one spec may be shared by any number of
+ *  threads, each converting with its own MachineState.
+ *  @author Areeb Khalfay
+ */
+final class MachineSpec {
+
+    /** A spec for a machine over ALPHABET with NUMPAWLS pawls, whose slots
+     *  hold ROTORS (reflector first), and whose plugboard is PLUGBOARD, or
+     *  none if PLUGBOARD is null. */
+    MachineSpec(Alphabet alphabet, int numPawls, List<Rotor> rotors,
+                Permutation plugboard) {
+        if (rotors.size() < 2 || !rotors.get(0).reflecting()) {
+            throw error("the first rotor of a machine must be a reflector");
+        }
+        if (numPawls < 0 || numPawls >= rotors.size()) {
+            throw error("bad number of pawls: %d", numPawls);
+        }
+        _alphabet = alphabet;
+        _size = alphabet.size();
+        _numRotors = rotors.size();
+        _numPawls = numPawls;
+        _names = new String[_numRotors];
+        _forward = new int[_numRotors][];
+        _backward = new int[_numRotors][];
+        for (int slot = 0; slot < _numRotors; slot++) {
+            Rotor rotor = rotors.get(slot);
+            if (slot > 0 && rotor.reflecting()) {
+                throw error("reflector %s must be in the first slot",
+                            rotor.name());
+            }
+            _names[slot] = rotor.name();
+            _forward[slot] = rotor.forwardTable();
+            if (slot > 0) {
+                _backward[slot] = rotor.backwardTable();
+            }
+        }
+        if (plugboard == null) {
+            _plugboard = null;
+        } else {
+            _plugboard = new int[_size];
+            for (int c = 0; c < _size; c++) {
+                _plugboard[c] = plugboard.permute(c);
+            }
+        }
+        _stepping = new Stepping(rotors, numPawls);
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the number of rotor slots I have. */
+    int numRotors() {
+        return _numRotors;
+    }
+
+    /** Return the number of pawls I have. */
+    int numPawls() {
+        return _numPawls;
+    }
+
+    /** Return the name of the rotor in SLOT. */
+    String rotorName(int slot) {
+        return _names[slot];
+    }
+
+    /** Return the forward conversion table of the rotor in SLOT, indexed
+     *  by position * alphabet size + input.  It must not be changed. */
+    int[] forwardTable(int slot) {
+        return _forward[slot];
+    }
+
+    /** Return the backward conversion table of the rotor in SLOT, which
+     *  must not be 0, indexed like forwardTable(SLOT).  It must not be
+     *  changed. */
+    int[] backwardTable(int slot) {
+        return _backward[slot];
+    }
+
+    /** Return my plugboard as a table from input to output, or null if
+     *  I have none.  It must not be changed. */
+    int[] plugboardTable() {
+        return _plugboard;
+    }
+
+    /** Return the stepping model of my rotors. */
+    Stepping stepping() {
+        return _stepping;
+    }
+
+    /** Return a new state with my rotors set according to SETTING, which
+     *  must be a string of numRotors()-1 characters of my alphabet, the
+     *  first giving the setting of the leftmost rotor after the
+     *  reflector. */
+    MachineState state(String setting) {
+        int[] symbols = setting.codePoints().toArray();
+        if (symbols.length != _numRotors - 1) {
+            throw error("setting %s should have %d characters", setting,
+                        _numRotors - 1);
+        }
+        int[] positions = new int[_numRotors];
+        for (int slot = 1; slot < _numRotors; slot++) {
+            int symbol = symbols[slot - 1];
+            if (!_alphabet.containsCodePoint(symbol)) {
+                throw error("setting character %s is not in the alphabet",
+                            new String(Character.toChars(symbol)));
+            }
+            positions[slot] = _alphabet.toIndex(symbol);
+        }
+        return new MachineState(positions);
+    }
+
+    /** Return the result of converting the input character C (as an
+     *  index in the range 0..alphabet size - 1) after first advancing the
+     *  rotors of STATE, exactly as Machine.convert(C) would. */
+    int convert(MachineState state, int c) {
+        int[] positions = state.positions();
+        _stepping.step(positions);
+        return path(positions, c);
+    }
+
+    /** Convert the LEN characters of IN starting at OFF into the same
+     *  positions of OUT (which may be IN), advancing STATE accordingly.
+     *  Spaces are copied unchanged and do not advance the rotors.  My
+     *  alphabet's symbols must be single characters (see Alphabet.bmp).
+     *  Allocates nothing. */
+    void convert(MachineState state, char[] in, int off, int len,
+                 char[] out) {
+        int[] positions = state.positions();
+        for (int i = off; i < off + len; i++) {
+            char ch = in[i];
+            if (ch == ' ') {
+                out[i] = ' ';
+            } else {
+                _stepping.step(positions);
+                out[i] = _alphabet.toChar(path(positions,
+                                               _alphabet.toInt(ch)));
+            }
+        }
+    }
+
+    /** Returns the encoding/decoding of MSG, advancing STATE
+     *  accordingly. */
+    String convert(MachineState state, String msg) {
+        if (!_alphabet.bmp()) {
+            int[] positions = state.positions();
+            StringBuilder result = new StringBuilder(msg.length());
+            for (int ch : msg.codePoints().toArray()) {
+                if (ch == ' ') {
+                    result.append(' ');
+                } else {
+                    _stepping.step(positions);
+                    result.appendCodePoint(_alphabet.toCodePoint(
+                            path(positions, _alphabet.toIndex(ch))));
+                }
+            }
+            return result.toString();
+        }
+        char[] converted = msg.toCharArray();
+        convert(state, converted, 0, converted.length, converted);
+        return new String(converted);
+    }
+
+    /** Advance STATE by STEPS characters without converting anything. */
+    void seek(MachineState state, long steps) {
+        if (steps < 0) {
+            throw error("negative message offset");
+        }
+        _stepping.step(state.positions(), steps);
+    }
+
+    /** Returns the signal path of C with the rotors at POSITIONS, without
+     *  moving any rotor. */
+    int path(int[] positions, int c) {
+        int size = _size;
+        int p = c;
+        if (_plugboard != null) {
+            p = _plugboard[p];
+        }
+        for (int slot = _numRotors - 1; slot >= 0; slot -= 1) {
+            p = _forward[slot][positions[slot] * size + p];
+        }
+        for (int slot = 1; slot < _numRotors; slot += 1) {
+            p = _backward[slot][positions[slot] * size + p];
+        }
+        if (_plugboard != null) {
+            p = _plugboard[p];
+        }
+        return p;
+    }
+
+    /** Write the signal path of every input symbol with the rotors at
+     *  POSITIONS into OUT, starting at OFFSET, without moving any
+     *  rotor. */
+    void composePath(int[] positions, int[] out, int offset) {
+        for (int c = 0; c < _size; c++) {
+            out[offset + c] = path(positions, c);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MachineSpec " + String.join(" ", _names);
+    }
+
+    /** My alphabet. */
+    private final Alphabet _alphabet;
+
+    /** The size of my alphabet. */
+    private final int _size;
+
+    /** Number of rotor slots. */
+    private final int _numRotors;
+
+    /** Number of pawls. */
+    private final int _numPawls;
+
+    /** Name of the rotor in each slot. */
+    private final String[] _names;
+
+    /** Forward conversion table of the rotor in each slot, indexed by
+     *  position * alphabet size + input. */
+    private final int[][] _forward;
+
+    /** Backward conversion table of the rotor in each slot but the
+     *  reflector's, indexed like _forward. */
+    private final int[][] _backward;
+
+    /** The plugboard as a table from input to output, or null if there is
+     *  no plugboard. */
+    private final int[] _plugboard;
+
+    /** Stepping model of my rotors. */
+    private final Stepping _stepping;
+
+}
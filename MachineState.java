@@ -0,0 +1,61 @@
+package enigma;
+
+import java.util.Arrays;
+
+/** The changing part of an Enigma machine: the position of the rotor in
+ *  each slot.  A state is advanced by a MachineSpec and belongs to
+ *  a single session; it is not safe to share one between threads, but it
+ *  costs one small array to create or copy.
+ *  @author Areeb Khalfay
+ */
+final class MachineState {
+
+    /** A state whose rotor in slot I is at POSITIONS[I].  POSITIONS is
+     *  used, not copied. */
+    MachineState(int[] positions) {
+        _positions = positions;
+    }
+
+    /** Return a new state with the same positions as mine. */
+    MachineState copy() {
+        return new MachineState(_positions.clone());
+    }
+
+    /** Set my positions to those of OTHER, which must have as many
+     *  slots. */
+    void copyFrom(MachineState other) {
+        System.arraycopy(other._positions, 0, _positions, 0,
+                         _positions.length);
+    }
+
+    /** Return the position of the rotor in SLOT. */
+    int position(int slot) {
+        return _positions[slot];
+    }
+
+    /** Return my positions, one per slot.  Changes to the result change
+     *  me. */
+    int[] positions() {
+        return _positions;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof MachineState
+            && Arrays.equals(_positions, ((MachineState) obj)._positions);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(_positions);
+    }
+
+    @Override
+    public String toString() {
+        return "MachineState " + Arrays.toString(_positions);
+    }
+
+    /** Position of the rotor in each slot, slot 0 being the reflector. */
+    private final int[] _positions;
+
+}
@@ -0,0 +1,446 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Machine class.
+ *  @author Areeb Khalfay
+ */
+public class MachineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Notches of the naval rotors I through VIII. */
+    static final String[] NOTCHES = {
+        "MQ", "ME", "MV", "MJ", "MZ", "MZM", "MZM", "MZM"
+    };
+
+    /** Names of the naval rotors I through VIII. */
+    private static final String[] MOVING = {
+        "I", "II", "III", "IV", "V", "VI", "VII", "VIII"
+    };
+
+    /** Return a 5-rotor, 3-pawl machine holding the naval rotors, with
+     *  ROTORS inserted, set to SETTING, and with plugboard PLUGBOARD
+     *  (which may be null). */
+    static Machine navalMachine(String[] rotors, String setting,
+                                String plugboard) {
+        Machine mach = new Machine(UPPER, 5, 3, navalRotors(NOTCHES));
+        mach.insertRotors(rotors);
+        mach.setRotors(setting);
+        if (plugboard != null) {
+            mach.setPlugboard(new Permutation(plugboard, UPPER));
+        }
+        return mach;
+    }
+
+    /** Return the naval rotors, with the moving rotors I through VIII
+     *  notched as given by NOTCHES. */
+    static ArrayList<Rotor> navalRotors(String[] notches) {
+        ArrayList<Rotor> all = new ArrayList<>();
+        for (int i = 0; i < MOVING.length; i += 1) {
+            all.add(new MovingRotor(MOVING[i],
+                new Permutation(NAVALA.get(MOVING[i]), UPPER), notches[i]));
+        }
+        all.add(new FixedRotor("Beta",
+            new Permutation(NAVALA.get("Beta"), UPPER)));
+        all.add(new FixedRotor("Gamma",
+            new Permutation(NAVALA.get("Gamma"), UPPER)));
+        all.add(new Reflector("B", new Permutation(NAVALA.get("B"), UPPER)));
+        all.add(new Reflector("C", new Permutation(NAVALA.get("C"), UPPER)));
+        return all;
+    }
+
+    /** The rotors used by the standard test settings. */
+    static final String[] ROTORS = { "B", "Beta", "III", "IV", "I" };
+
+    /** The plugboard used by the standard test settings. */
+    static final String PLUGBOARD = "(HQ) (EX) (IP) (TR) (BY)";
+
+    /** Return a message of LEN pseudo-random upper-case letters with
+     *  occasional spaces, determined by SEED. */
+    static String randomMessage(int len, long seed) {
+        Random random = new Random(seed);
+        StringBuilder msg = new StringBuilder();
+        for (int i = 0; i < len; i += 1) {
+            if (random.nextInt(8) == 0) {
+                msg.append(' ');
+            } else {
+                msg.append((char) ('A' + random.nextInt(26)));
+            }
+        }
+        return msg.toString();
+    }
+
+    /** Return the number of spaces among the first LEN characters of
+     *  MSG. */
+    private static int countSpaces(String msg, int len) {
+        int spaces = 0;
+        for (int i = 0; i < len; i += 1) {
+            if (msg.charAt(i) == ' ') {
+                spaces += 1;
+            }
+        }
+        return spaces;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkKnownMessage() {
+        Machine mach = navalMachine(ROTORS, "AXLE", PLUGBOARD);
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                     mach.convert("FROMHISSHOULDERHIAWATHA"));
+    }
+
+    @Test
+    public void checkPathCacheMatchesUncached() {
+        String msg = randomMessage(40000, 3);
+        Machine cached = navalMachine(ROTORS, "AXLE", PLUGBOARD);
+        Machine uncached = navalMachine(ROTORS, "AXLE", PLUGBOARD);
+        uncached.setPathCacheCapacity(0);
+        assertEquals(uncached.convert(msg), cached.convert(msg));
+        Machine tiny = navalMachine(ROTORS, "AXLE", PLUGBOARD);
+        tiny.setPathCacheCapacity(3);
+        assertEquals(navalMachine(ROTORS, "AXLE", PLUGBOARD).convert(msg),
+                     tiny.convert(msg));
+    }
+
+    @Test
+    public void checkPlugboardChangeClearsCache() {
+        String msg = randomMessage(40000, 5);
+        Machine mach = navalMachine(ROTORS, "AXLE", PLUGBOARD);
+        mach.convert(msg);
+        mach.setRotors("AXLE");
+        mach.setPlugboard(null);
+        Machine plain = navalMachine(ROTORS, "AXLE", null);
+        plain.setPathCacheCapacity(0);
+        assertEquals(plain.convert(msg), mach.convert(msg));
+    }
+
+    @Test
+    public void checkKeystreamMatchesNormalPath() {
+        String msg = randomMessage(40000, 7);
+        Machine table = navalMachine(ROTORS, "AXLE", PLUGBOARD);
+        table.setKeystreamBudget(1 << 24);
+        String expected = navalMachine(ROTORS, "AXLE", PLUGBOARD)
+            .convert(msg);
+        assertEquals(expected, table.convert(msg));
+        assertTrue(table.keystreamPeriod() > 0);
+    }
+
+    @Test
+    public void checkKeystreamOverBudget() {
+        String msg = randomMessage(2000, 11);
+        Machine small = navalMachine(ROTORS, "AXLE", PLUGBOARD);
+        small.setKeystreamBudget(1024);
+        assertEquals(navalMachine(ROTORS, "AXLE", PLUGBOARD).convert(msg),
+                     small.convert(msg));
+        assertEquals(0, small.keystreamPeriod());
+    }
+
+    @Test
+    public void checkKeystreamSwitchedOffMidMessage() {
+        String msg = randomMessage(3000, 13);
+        Machine mach = navalMachine(ROTORS, "AXLE", PLUGBOARD);
+        mach.setKeystreamBudget(1 << 24);
+        String first = mach.convert(msg);
+        mach.setKeystreamBudget(0);
+        String second = mach.convert(msg);
+        Machine plain = navalMachine(ROTORS, "AXLE", PLUGBOARD);
+        assertEquals(plain.convert(msg) + plain.convert(msg),
+                     first + second);
+    }
+
+    @Test
+    public void checkSeekMatchesSequential() {
+        String msg = randomMessage(60000, 17).replace(" ", "");
+        String whole = navalMachine(ROTORS, "AXLE", PLUGBOARD).convert(msg);
+        Machine mach = navalMachine(ROTORS, "AXLE", PLUGBOARD);
+        int[] offsets = { 0, 1, 25, 676, 16249, 16250, 40000, 52000, 3 };
+        for (int offset : offsets) {
+            mach.seek(offset);
+            assertEquals(msg("seek", "offset %d", offset),
+                         whole.substring(offset),
+                         mach.convert(msg.substring(offset)));
+            assertEquals(msg.length(), mach.offset());
+        }
+    }
+
+    @Test
+    public void checkSeekWithKeystream() {
+        String msg = randomMessage(40000, 19).replace(" ", "");
+        String whole = navalMachine(ROTORS, "AXLE", PLUGBOARD).convert(msg);
+        Machine mach = navalMachine(ROTORS, "AXLE", PLUGBOARD);
+        mach.setKeystreamBudget(1 << 24);
+        mach.convert(msg.substring(0, 5));
+        mach.seek(30000);
+        assertEquals(whole.substring(30000),
+                     mach.convert(msg.substring(30000)));
+        mach.seek(2);
+        assertEquals(whole.substring(2), mach.convert(msg.substring(2)));
+    }
+
+    @Test
+    public void checkSeekDoesNotReplay() {
+        Machine mach = navalMachine(ROTORS, "AXLE", PLUGBOARD);
+        Machine far = navalMachine(ROTORS, "AXLE", PLUGBOARD);
+        mach.seek(12345);
+        far.seek(12345 + 1000L * 16250 * 1000);
+        String msg = randomMessage(500, 23).replace(" ", "");
+        assertEquals(mach.convert(msg), far.convert(msg));
+    }
+
+    @Test
+    public void checkLibraryMachinesIndependent() {
+        RotorLibrary library = BombeTest.library(MainTest.CONFIG);
+        Machine first = library.machine();
+        Machine second = library.machine();
+        for (Machine mach : new Machine[] { first, second }) {
+            mach.insertRotors(ROTORS);
+            mach.setPlugboard(new Permutation(PLUGBOARD, UPPER));
+        }
+        first.setRotors("AXLE");
+        second.setRotors("ZZZZ");
+        assertEquals("QVPQ", first.convert("FROM"));
+        second.convert("HELLO WORLD");
+        assertEquals(" SOK OILPUBKJ ZPISFXDW",
+                     first.convert(" HIS SHOULDER HIAWATHA"));
+    }
+
+    @Test
+    public void checkParallelMatchesSequential() {
+        String msg = randomMessage(5 * Machine.PARALLEL_CHUNK + 123, 29);
+        Machine seq = navalMachine(ROTORS, "AXLE", PLUGBOARD);
+        Machine par = navalMachine(ROTORS, "AXLE", PLUGBOARD);
+        assertEquals(seq.convert(msg), par.convertParallel(msg));
+        assertEquals(seq.offset(), par.offset());
+        assertEquals(seq.convert("HELLO WORLD"),
+                     par.convert("HELLO WORLD"));
+    }
+
+    @Test
+    public void checkBulkCharConvert() {
+        String msg = randomMessage(3000, 31);
+        String expected = navalMachine(ROTORS, "AXLE", PLUGBOARD)
+            .convert(msg);
+        Machine mach = navalMachine(ROTORS, "AXLE", PLUGBOARD);
+        char[] buf = ("xx" + msg).toCharArray();
+        mach.convert(buf, 2, 1000, buf);
+        mach.convert(buf, 1002, msg.length() - 1000, buf);
+        assertEquals("xx" + expected, new String(buf));
+    }
+
+    @Test
+    public void checkBulkByteConvert() {
+        String msg = randomMessage(3000, 37);
+        String expected = navalMachine(ROTORS, "AXLE", PLUGBOARD)
+            .convert(msg);
+        Machine mach = navalMachine(ROTORS, "AXLE", PLUGBOARD);
+        ByteBuffer in =
+            ByteBuffer.wrap(msg.getBytes(StandardCharsets.US_ASCII));
+        ByteBuffer out = ByteBuffer.allocate(msg.length());
+        mach.convert(in, out);
+        assertEquals(expected,
+                     new String(out.array(), StandardCharsets.US_ASCII));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkByteConvertNeedsByteSymbols() {
+        Machine mach = new Machine(new CharacterRange('\u0100', '\u0119'),
+                                   5, 3, new ArrayList<>());
+        mach.convert(ByteBuffer.allocate(1), ByteBuffer.allocate(1));
+    }
+
+    @Test
+    public void checkCountStep() {
+        Stepping stepping = navalMachine(ROTORS, "AXLE", PLUGBOARD)
+            .spec().stepping();
+        int[] plain = {0, 0, 23, 11, 4};
+        int[] counted = plain.clone();
+        long[] counts = new long[2];
+        long moves = 0;
+        for (int i = 0; i < 20000; i += 1) {
+            int[] before = plain.clone();
+            stepping.step(plain);
+            stepping.countStep(counted, counts);
+            assertArrayEquals(plain, counted);
+            for (int slot = 0; slot < plain.length; slot += 1) {
+                moves += Math.floorMod(plain[slot] - before[slot], 26);
+            }
+        }
+        assertEquals(moves, counts[0]);
+        assertTrue(counts[1] > 0);
+    }
+
+    @Test
+    public void checkSpecSessionsMatchMachine() {
+        String msg = randomMessage(20000, 41);
+        Machine mach = navalMachine(ROTORS, "AXLE", PLUGBOARD);
+        MachineSpec spec = mach.spec();
+        MachineState state = mach.state();
+        MachineState other = state.copy();
+        assertEquals(mach.convert(msg), spec.convert(state, msg));
+        assertEquals(mach.state(), state);
+        assertNotEquals(state, other);
+        spec.seek(other, msg.replace(" ", "").length());
+        assertEquals(state, other);
+        other.copyFrom(spec.state("AAAA"));
+        assertEquals(spec.state("AAAA"), other);
+    }
+
+    @Test
+    public void checkSpecSharedBetweenThreads() throws Exception {
+        MachineSpec spec =
+            navalMachine(ROTORS, "AAAA", PLUGBOARD).spec();
+        String[] messages = new String[8];
+        String[] results = new String[messages.length];
+        Thread[] threads = new Thread[messages.length];
+        for (int k = 0; k < threads.length; k += 1) {
+            final int session = k;
+            messages[k] = randomMessage(20000, 100 + k);
+            threads[k] = new Thread(() -> {
+                MachineState state = spec.state("AXLE");
+                results[session] = spec.convert(state, messages[session]);
+            });
+            threads[k].start();
+        }
+        for (int k = 0; k < threads.length; k += 1) {
+            threads[k].join();
+            assertEquals(navalMachine(ROTORS, "AXLE", PLUGBOARD)
+                         .convert(messages[k]), results[k]);
+        }
+    }
+
+    @Test
+    public void checkCheckpointResume() {
+        String msg = randomMessage(30000, 23);
+        Machine whole = navalMachine(ROTORS, "AXLE", PLUGBOARD);
+        String expected = whole.convert(msg);
+        Machine first = navalMachine(ROTORS, "AXLE", PLUGBOARD);
+        String head = first.convert(msg.substring(0, 12345));
+        byte[] checkpoint = first.checkpoint();
+        assertTrue(checkpoint.length < 64);
+        Machine second = navalMachine(new String[] {
+            "C", "Gamma", "I", "II", "III" }, "ZZZZ", null);
+        second.resume(checkpoint);
+        assertEquals(expected, head + second.convert(msg.substring(12345)));
+        assertEquals(first.offset(), 12345 - countSpaces(msg, 12345));
+        second.seek(0);
+        assertEquals(expected, second.convert(msg));
+    }
+
+    @Test
+    public void checkCheckpointWithKeystream() {
+        Machine first = navalMachine(ROTORS, "AXLE", null);
+        first.setKeystreamBudget(1L << 24);
+        String msg = randomMessage(5000, 29);
+        first.convert(msg);
+        Machine second = navalMachine(ROTORS, "AAAA", PLUGBOARD);
+        second.resume(first.checkpoint());
+        assertEquals(first.convert(msg), second.convert(msg));
+    }
+
+    @Test
+    public void checkCheckpointPlugboard() {
+        Machine first = navalMachine(ROTORS, "AXLE", null);
+        Machine second = navalMachine(ROTORS, "AAAA", PLUGBOARD);
+        second.resume(first.checkpoint());
+        assertNull(second.getplugBoard());
+        Machine identity = navalMachine(ROTORS, "AXLE", "");
+        second.resume(identity.checkpoint());
+        assertNotNull(second.getplugBoard());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkEditedConfigCheckpoint() {
+        byte[] checkpoint = navalMachine(ROTORS, "AXLE", PLUGBOARD)
+            .checkpoint();
+        String[] notches = NOTCHES.clone();
+        notches[7] = "MZ";
+        Machine edited = new Machine(UPPER, 5, 3, navalRotors(notches));
+        edited.resume(checkpoint);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkTruncatedCheckpoint() {
+        byte[] checkpoint = navalMachine(ROTORS, "AXLE", PLUGBOARD)
+            .checkpoint();
+        navalMachine(ROTORS, "AXLE", null).resume(
+            Arrays.copyOf(checkpoint, checkpoint.length - 1));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkForeignCheckpoint() {
+        byte[] checkpoint = navalMachine(ROTORS, "AXLE", PLUGBOARD)
+            .checkpoint();
+        checkpoint[1] ^= 1;
+        navalMachine(ROTORS, "AXLE", null).resume(checkpoint);
+    }
+
+    @Test
+    public void checkBadSettings() {
+        Machine mach = navalMachine(ROTORS, "AXLE", null);
+        String[] bad = {
+            "* B Beta", "* B BETA III IV XX AXLE", "* B BETA I II III AX",
+            "* B Beta III IV I AX1E", "* B Beta III IV III AXLE",
+            "* B Beta III IV I AXLE (HQ) (EX", "* B Beta III IV I AXLE (H1)",
+        };
+        for (String line : bad) {
+            try {
+                Settings.parse(line, mach);
+                fail("no error for " + line);
+            } catch (EnigmaException excp) {
+                assertNotNull(excp.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void checkCompiledSettings() {
+        Settings key = Settings.parse(
+            "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)", 5, UPPER);
+        Settings other = Settings.parse("* C Gamma V II I ZZZZ", 5, UPPER);
+        assertNull(other.plugboard());
+        Machine mach = navalMachine(ROTORS, "AAAA", null);
+        mach.setUp(key);
+        MachineSpec spec = mach.spec();
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                     mach.convert("FROMHISSHOULDERHIAWATHA"));
+        mach.setUp(key);
+        assertSame(spec, mach.spec());
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                     mach.convert("FROMHISSHOULDERHIAWATHA"));
+        mach.setUp(other);
+        assertEquals(navalMachine(new String[] {
+            "C", "Gamma", "V", "II", "I" }, "ZZZZ", null).convert("HELLO"),
+            mach.convert("HELLO"));
+        mach.setUp(key);
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                     mach.convert("FROMHISSHOULDERHIAWATHA"));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkSpecNeedsReflectorFirst() {
+        new MachineSpec(UPPER, 1, List.of(
+            new FixedRotor("Beta", new Permutation(NAVALA.get("Beta"), UPPER)),
+            new Reflector("B", new Permutation(NAVALA.get("B"), UPPER))),
+            null);
+    }
+
+}
@@ -1,12 +1,11 @@
 package enigma;
 
-import java.io.File;
-import java.io.IOException;
-import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
-import java.util.ArrayList;
-import java.util.NoSuchElementException;
-import java.util.Scanner;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import static enigma.EnigmaException.*;
 
@@ -23,10 +22,56 @@ public final class Main {
      *  input.  ARGS[2] is optional; when present, it names an output
      *  file for processed messages.  Otherwise, output goes to the
      *  standard output. Exits normally if there are no errors in the input;
-     *  otherwise with code 1. */
+     *  otherwise with code 1.
+     *
+     *  Alternatively, ARGS may be "--server", the name of a configuration
+     *  file and an address (a port number on the loopback interface, or
+     *  the path of a Unix-domain socket), in which case the configuration
+     *  is read once and requests are served from that address until the
+     *  process is killed (see Server).
+     *
+     *  Finally, ARGS may be "--compile", the name of a configuration file
+     *  and the name of a file to which a binary snapshot of it is written.
+     *  A snapshot may be used wherever a configuration file is expected,
+     *  and is loaded without being parsed.
+     *
+     *  ARGS may also be "--ngrams", the name of a configuration file, a
+     *  length N, the name of a text file and the name of a file to which
+     *  the table of scores of the N-grams of that text, over the
+     *  configuration's alphabet, is written (see NGrams).
+     *
+     *  ARGS may also be "--catalogue", the name of a configuration file
+     *  and the name of a file to which the catalogue of the
+     *  characteristics of every rotor order and start position of that
+     *  configuration is written (see Catalogue). */
     public static void main(String... args) {
         try {
-            new Main(args).process();
+            if (args.length > 0 && args[0].equals(SERVER_OPTION)) {
+                if (args.length != 3) {
+                    throw error("usage: %s CONFIG ADDRESS", SERVER_OPTION);
+                }
+                Main main = new Main(args[1]);
+                new Server(main, main.readConfig()).serve(args[2]);
+            } else if (args.length > 0 && args[0].equals(COMPILE_OPTION)) {
+                if (args.length != 3) {
+                    throw error("usage: %s CONFIG SNAPSHOT", COMPILE_OPTION);
+                }
+                RotorLibrary.load(args[1]).writeSnapshot(args[2]);
+            } else if (args.length > 0 && args[0].equals(NGRAMS_OPTION)) {
+                if (args.length != 5 || !args[2].matches("[0-9]+")) {
+                    throw error("usage: %s CONFIG N CORPUS TABLE",
+                                NGRAMS_OPTION);
+                }
+                writeNGrams(args[1], Integer.parseInt(args[2]), args[3],
+                            args[4]);
+            } else if (args.length > 0 && args[0].equals(CATALOGUE_OPTION)) {
+                if (args.length != 3) {
+                    throw error("usage: %s CONFIG INDEX", CATALOGUE_OPTION);
+                }
+                Catalogue.build(RotorLibrary.load(args[1]), args[2]);
+            } else {
+                new Main(args).process();
+            }
             return;
         } catch (EnigmaException excp) {
             System.err.printf("Error: %s%n", excp.getMessage());
@@ -34,257 +79,246 @@ public final class Main {
         System.exit(1);
     }
 
+    /** Write the table of scores of the N-grams of the file named CORPUS,
+     *  over the alphabet of the configuration file named CONFIG, to the
+     *  file named TABLE. */
+    private static void writeNGrams(String config, int n, String corpus,
+                                    String table) {
+        Alphabet alphabet = RotorLibrary.load(config).alphabet();
+        ChannelReader text = ChannelReader.open(corpus);
+        try {
+            NGrams.train(alphabet, n, text).write(table);
+        } finally {
+            text.close();
+        }
+    }
+
     /** Check ARGS and open the necessary files (see comment on main). */
     Main(String[] args) {
         if (args.length < 1 || args.length > 3) {
             throw error("Only 1, 2, or 3 command-line arguments allowed");
         }
 
-        _config = getInput(args[0]);
+        _config = checkInput(args[0]);
 
         if (args.length > 1) {
-            _input = getInput(args[1]);
-            _helperinput = getInput(args[1]);
+            _input = ChannelReader.open(args[1]);
         } else {
-            _input = new Scanner(System.in);
+            _input = new ChannelReader(Channels.newChannel(System.in));
         }
 
         if (args.length > 2) {
-            _output = getOutput(args[2]);
+            _output = GroupWriter.open(args[2]);
         } else {
-            _output = System.out;
+            _output = GroupWriter.standardOutput();
         }
     }
 
-    /** Return a Scanner reading from the file named NAME. */
-    private Scanner getInput(String name) {
-        try {
-            return new Scanner(new File(name));
-        } catch (IOException excp) {
-            throw error("could not open %s", name);
-        }
+    /** Open the configuration file named CONFIG only, for a Main that
+     *  converts the inputs given to convert() rather than files. */
+    Main(String config) {
+        _config = checkInput(config);
     }
 
-    /** Return a PrintStream writing to the file named NAME. */
-    private PrintStream getOutput(String name) {
-        try {
-            return new PrintStream(new File(name));
-        } catch (IOException excp) {
+    /** Return NAME, after checking that it names a readable file. */
+    private String checkInput(String name) {
+        if (!Files.isReadable(Paths.get(name))) {
             throw error("could not open %s", name);
         }
+        return name;
     }
 
     /** Configure an Enigma machine from the contents of configuration
      *  file _config and apply it to the messages in _input, sending the
-     *  results to _output. */
+     *  results to _output.  The input is read in a single pass, and
+     *  message lines are converted a block at a time, so memory use does
+     *  not depend on the length of the input or of its lines. */
     public void process() {
-        Machine enigma = readConfig();
-        if (!_input.hasNext("\\*")) {
-            throw new EnigmaException("This is an incorrect config file.");
-        }
-        String settings = _input.nextLine();
-        String holder =_helperinput.nextLine();
-        setUp(enigma, settings);
-        if (!_input.hasNextLine()) {
-            throw new EnigmaException("There is no more input to parse.");
-        }
-        while (_helperinput.hasNext("\\n")) {
-            _input.nextLine();
-            _helperinput.nextLine();
-            _output.println(" ");
-        }
-        while (_input.hasNextLine() && !_input.hasNext("\\*")) {
-            String newline = _input.nextLine().toUpperCase();
-            if (newline.equals("")){
-                _output.println(" ");
-            }
-            else {
-                newline = enigma.convert(newline);
+        try {
+            convert(readConfig(), _input, _output);
+        } finally {
+            try {
+                _input.close();
+            } finally {
+                _output.close();
             }
-            printMessageLine(newline);
-            _helperinput.nextLine();
-        }
-        String buff;
-        if (!_input.hasNextLine()) {
-            throw new EnigmaException("No more input.");
-        }
-        buff = _input.nextLine();
-        setUp(enigma, settings);
-        int count = 0;
-        while (_helperinput.hasNext("\\*")) {
-            _helperinput.nextLine();
-            count++;
-        }
-        if (buff.equals("")) {
-            _output.println(" ");
-        }
-        while (_helperinput.hasNextLine() && !_helperinput.hasNext("\\*")) {
-            String newline = enigma.convert
-                    (_helperinput.nextLine().toUpperCase());
-            printMessageLine(newline);
         }
     }
 
-    /** Return an Enigma machine configured from the contents of configuration
-     *  file _config. Used Stack Overflow for else if the first if else.*/
-    public Machine readConfig() {
-        try {
-            if (_config.hasNext("[A-Z][-][A-Z]")) {
-                String alphabetConfig = (_config.next());
-                Scanner alphabetScanner = new
-                        Scanner(alphabetConfig).useDelimiter("-");
-                ArrayList<Character> alphabetChars = new ArrayList<>();
-                while (alphabetScanner.hasNext()) {
-                    Character alphabetBuffer = alphabetScanner.next().charAt(0);
-                    alphabetChars.add(alphabetBuffer);
+    /** Apply ENIGMA, set up by the settings lines of INPUT, to the
+     *  message lines of INPUT, writing the results to OUTPUT.  ENIGMA
+     *  must have been returned by my readConfig(). */
+    void convert(Machine enigma, ChannelReader input, GroupWriter output) {
+        char[] block = new char[BLOCK_SIZE];
+        boolean configured = false;
+        int ch = input.readCodePoint();
+        while (ch >= 0) {
+            while (ch == ' ' || ch == '\t') {
+                ch = input.readCodePoint();
+            }
+            if (ch == '*') {
+                setUp(enigma, readLine(input, ch));
+                configured = true;
+                ch = '\n';
+            } else if (!configured) {
+                if (ch != '\n' && ch != '\r' && ch >= 0) {
+                    throw error("input does not start with a settings line");
                 }
-                Character firstChar = alphabetChars.get(0);
-                Character lastChar = alphabetChars.get(1);
-                _alphabet = new CharacterRange(firstChar, lastChar);
             } else {
-                String name = _config.next();
-                int greatestIndex = 0;
-                for (int i = 0; i < name.length(); i++) {
-                    int current = (int) name.charAt(i);
-                    if (current > greatestIndex) {
-                        greatestIndex = current;
+                Events.Message event = new Events.Message();
+                event.begin();
+                long start = Metrics.ENABLED ? System.nanoTime() : 0;
+                long bytes = output.bytes();
+                long steps = enigma.rotorSteps();
+                long doubleSteps = enigma.doubleSteps();
+                int length = 0;
+                while (ch >= 0 && ch != '\n') {
+                    if (ch != '\r') {
+                        if (length + 2 > block.length) {
+                            convert(enigma, block, length, output);
+                            event.characters += length;
+                            length = 0;
+                        }
+                        length += Character.toChars(
+                            Character.isWhitespace(ch) ? ' '
+                            : Character.toUpperCase(ch), block, length);
                     }
+                    ch = input.readCodePoint();
                 }
-                char smallestChar = name.charAt(0);
-                for (int i = 1; i < name.length(); ++i) {
-                    if (name.charAt(i) < smallestChar) {
-                        smallestChar = name.charAt(i);
-                    }
+                convert(enigma, block, length, output);
+                output.endLine();
+                event.characters += length;
+                event.bytes = output.bytes() - bytes;
+                event.rotorSteps = enigma.rotorSteps() - steps;
+                event.doubleSteps = enigma.doubleSteps() - doubleSteps;
+                event.commit();
+                if (Metrics.ENABLED) {
+                    Metrics metrics = Metrics.global();
+                    metrics.add(Metrics.MESSAGES, 1);
+                    metrics.add(Metrics.OUTPUT_BYTES, event.bytes);
+                    metrics.record(Metrics.MESSAGE,
+                                   System.nanoTime() - start);
                 }
-                Character firstChar = smallestChar;
-                Character lastChar = (char) greatestIndex;
-                _alphabet = new CharacterRange(firstChar, lastChar);
             }
-            String numRotorsString = _config.next();
-            int numRotors = Integer.parseInt(numRotorsString);
-            String numPawlsString = _config.next();
-            int numPawls = Integer.parseInt(numPawlsString);
-            ArrayList<Rotor> allRotors = new ArrayList<>();
-            while (_config.hasNext()) {
-                allRotors.add(readRotor());
+            while (ch >= 0 && ch != '\n') {
+                ch = input.readCodePoint();
             }
-            return new Machine(_alphabet, numRotors, numPawls, allRotors);
-        } catch (NoSuchElementException excp) {
-            throw error("configuration file truncated");
+            ch = input.readCodePoint();
         }
     }
 
-    /** Return a rotor, reading its description from _config. */
-    private Rotor readRotor() {
-        try {
-            String rotorName = _config.next();
-            String rotorTypeAndNotches = _config.next();
-            ArrayList<String> cycles = new ArrayList<>();
-            String temp = _config.next();
-            String buffer = temp;
-            cycles.add(temp);
-            while (temp.contains("(") || buffer.contains("(")) {
-                if (!_config.hasNext("[(][A-Z]+[)]")) {
-                    break;
-                }
-                buffer = _config.next();
-                if (buffer.contains("(")) {
-                    cycles.add(buffer);
-                }
-                temp = buffer;
-            }
-            StringBuilder cyclesBuffer = new StringBuilder();
-            for (String x : cycles) {
-                cyclesBuffer.append(x + " ");
-            }
-            String cyclesString = cyclesBuffer.toString();
-            Permutation permbuff = new Permutation(cyclesString, _alphabet);
-            if (rotorTypeAndNotches.substring(0, 1).equals("M")) {
-                return new MovingRotor(rotorName,
-                        permbuff, rotorTypeAndNotches);
-            } else if (rotorTypeAndNotches.substring(0, 1).equals("N")) {
-                return new FixedRotor(rotorName, permbuff);
-            } else if (rotorTypeAndNotches.substring(0, 1).equals("R")) {
-                return new Reflector(rotorName, permbuff);
-            } else {
-                throw error("This is not an acceptable rotor type.");
+    /** Convert the first LENGTH characters of BLOCK, which end with a
+     *  whole symbol, with ENIGMA and write them to OUTPUT.  They are
+     *  converted in place unless ENIGMA's symbols may be surrogate pairs,
+     *  which need not convert to as many characters as they came from. */
+    private static void convert(Machine enigma, char[] block, int length,
+                                GroupWriter output) {
+        if (enigma.alphabet().bmp()) {
+            enigma.convert(block, 0, length, block);
+            output.write(block, length);
+        } else {
+            char[] converted =
+                enigma.convert(new String(block, 0, length)).toCharArray();
+            output.write(converted, converted.length);
+        }
+    }
+
+    /** Return the rest of the current line of INPUT, whose first
+     *  character FIRST has already been read, consuming its end. */
+    private String readLine(ChannelReader input, int first) {
+        StringBuilder line = new StringBuilder();
+        int ch = first;
+        while (ch >= 0 && ch != '\n') {
+            if (ch != '\r') {
+                line.appendCodePoint(ch);
             }
-        } catch (NoSuchElementException excp) {
-            throw error("bad rotor description");
+            ch = input.readCodePoint();
         }
+        return line.toString();
+    }
+
+    /** Return an Enigma machine configured from the contents of configuration
+     *  file _config, which may also be a snapshot written with
+     *  --compile. */
+    public Machine readConfig() {
+        Events.ConfigLoad event = new Events.ConfigLoad();
+        event.begin();
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        RotorLibrary library = RotorLibrary.load(_config);
+        Machine machine = library.machine();
+        if (Metrics.ENABLED) {
+            Metrics.global().record(Metrics.CONFIG_LOAD,
+                                    System.nanoTime() - start);
+        }
+        event.file = _config;
+        event.rotors = machine.numRotors();
+        event.commit();
+        return machine;
     }
 
     /** Set M according to the specification given on SETTINGS,
      *  which must have the format specified in the assignment. */
     public void setUp(Machine M, String settings) {
-        Scanner settingsScanner = new Scanner(settings);
-        if (settingsScanner.hasNext("\\*")) {
-            settingsScanner.next();
-
-        }
-        String[] rotors = new String[M.numRotors()];
-        for (int i = 0; i < M.numRotors(); i++) {
-            String next = settingsScanner.next();
-            rotors[i] = next;
+        Events.SetUp event = new Events.SetUp();
+        event.begin();
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        M.setUp(compile(M, settings));
+        if (Metrics.ENABLED) {
+            Metrics.global().record(Metrics.SETUP, System.nanoTime() - start);
         }
-        M.insertRotors(rotors);
-        M.setRotors(settingsScanner.next());
-        while (settingsScanner.hasNext("[(][A-Z]+[)]")) {
-            String temp = settingsScanner.next();
-            String buffer = temp;
-            ArrayList<String> cycles = new ArrayList<>();
-            while (temp.contains("(") || buffer.contains("(")) {
-                if (!settingsScanner.hasNext("[(][A-Z]+[)]")) {
-                    cycles.add(buffer);
-                    break;
-                }
-                if (buffer.contains("(")) {
-                    cycles.add(buffer);
-                }
-                buffer = settingsScanner.next();
-                temp = buffer;
-            }
-            StringBuilder cyclesBuffer = new StringBuilder();
-            for (String x : cycles) {
-                cyclesBuffer.append(x + " ");
-            }
-            String cyclesString = cyclesBuffer.toString();
-            Permutation permbuff = new Permutation(cyclesString, _alphabet);
-            M.setPlugboard(permbuff);
-        }
-        if (M.getplugBoard() == null) {
-            M.setPlugboard(null);
-        }
-
+        event.settings = settings;
+        event.commit();
     }
 
-    /** Print MSG in groups of five (except that the last group may
-     *  have fewer letters). */
-    private void printMessageLine(String msg) {
-        String helper = msg.replaceAll("\\s", "").toUpperCase();
-        for (int i = 0; i < helper.length(); i += 5) {
-            int limit = helper.length() - i;
-            if (limit > 5) {
-                _output.print(helper.substring(i, i + 5) + " ");
-            } else {
-                _output.println(helper.substring(i, i + limit));
+    /** Return the settings given by the settings line SETTINGS for
+     *  machine M, compiling them only if they are not among the last
+     *  SETTINGS_CACHE_SIZE lines used. */
+    private Settings compile(Machine M, String settings) {
+        synchronized (_keys) {
+            Settings key = _keys.get(settings);
+            if (key == null) {
+                key = Settings.parse(settings, M);
+                _keys.put(settings, key);
             }
+            return key;
         }
     }
 
-    /** Alphabet used in this machine. */
-    private Alphabet _alphabet;
+    /** Compiled settings lines, least recently used first. */
+    private final LinkedHashMap<String, Settings> _keys =
+        new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, Settings> eldest) {
+                return size() > SETTINGS_CACHE_SIZE;
+            }
+        };
 
     /** Source of input messages. */
-    private Scanner _input;
+    private ChannelReader _input;
 
-    /** Source of machine configuration. */
-    private Scanner _config;
+    /** Name of the machine configuration file. */
+    private String _config;
 
     /** File for encoded/decoded messages. */
-    private PrintStream _output;
+    private GroupWriter _output;
+
+    /** First argument of main that selects server mode. */
+    static final String SERVER_OPTION = "--server";
+
+    /** First argument of main that compiles a configuration snapshot. */
+    static final String COMPILE_OPTION = "--compile";
+
+    /** First argument of main that builds an n-gram table. */
+    static final String NGRAMS_OPTION = "--ngrams";
+
+    /** First argument of main that builds a characteristic catalogue. */
+    static final String CATALOGUE_OPTION = "--catalogue";
+
+    /** Number of compiled settings lines kept. */
+    static final int SETTINGS_CACHE_SIZE = 256;
 
-    /** Second input. */
-    private Scanner _helperinput;
+    /** Number of characters of a message line converted at a time. */
+    static final int BLOCK_SIZE = 1 << 13;
 
 }
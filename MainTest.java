@@ -1,17 +1,140 @@
 package enigma;
 
 import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 /** Piece of Code Written to test Main.
  * @author Areeb Khalfay */
 public class MainTest {
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /** The settings line of the standard test message. */
+    private static final String SETTINGS =
+        "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)";
+
     /** Testing the code to make sure the
      *  right output is displayed in the file. */
     @Test
-    public void mainTest() {
-        String[] args = new String[]
-        {"testing/correct/default.conf", "testing/correct/carroll1.inp",
-            "testing/correct/carrol1.out"};
-        Main main = new Main(args);
-        main.process();
+    public void mainTest() throws IOException {
+        String output = runMain(SETTINGS + "\nFROM his shoulder Hiawatha\n"
+                                + "Took the camera of rosewood\n");
+        Machine mach = MachineTest.navalMachine(MachineTest.ROTORS, "AXLE",
+                                                MachineTest.PLUGBOARD);
+        mach.convert("FROMHISSHOULDERHIAWATHA");
+        assertEquals("QVPQS OKOIL PUBKJ ZPISF XDW\n"
+                     + groups(mach.convert("TOOKTHECAMERAOFROSEWOOD"))
+                     + "\n", output);
+    }
+
+    @Test
+    public void checkLongLine() throws IOException {
+        String msg = MachineTest.randomMessage(3 * Main.BLOCK_SIZE + 7, 5);
+        String output = runMain(SETTINGS + "\n" + msg + "\n");
+        Machine mach = MachineTest.navalMachine(MachineTest.ROTORS, "AXLE",
+                                                MachineTest.PLUGBOARD);
+        assertEquals(groups(mach.convert(msg.replace(" ", ""))) + "\n",
+                     output);
+    }
+
+    @Test
+    public void checkCodePointAlphabet() throws IOException {
+        StringBuilder msg = new StringBuilder();
+        while (msg.length() < Main.BLOCK_SIZE - 1) {
+            msg.append("ace ");
+        }
+        msg.setLength(Main.BLOCK_SIZE - 1);
+        msg.append("\ud83d\ude00\u05d0\u4e00 \ud83d\ude00A");
+        String output = runMain(ConfigParserTest.SYMBOLS,
+                                "* B II I \u05d0\ud83d\ude00\n" + msg
+                                + "\n");
+        RotorLibrary library = BombeTest.library(ConfigParserTest.SYMBOLS);
+        Machine mach = new Machine(library.alphabet(), 3, 2,
+                                   library.rotors());
+        mach.insertRotors(new String[] { "B", "II", "I" });
+        mach.setRotors("\u05d0\ud83d\ude00");
+        String letters = msg.toString().toUpperCase().replace(" ", "");
+        assertEquals(groups(mach.convert(letters)) + "\n", output);
+    }
+
+    /** Return the symbols of LETTERS in groups of five separated by
+     *  spaces. */
+    private static String groups(String letters) {
+        StringBuilder result = new StringBuilder();
+        int[] symbols = letters.codePoints().toArray();
+        for (int i = 0; i < symbols.length; i += 1) {
+            if (i > 0 && i % 5 == 0) {
+                result.append(' ');
+            }
+            result.appendCodePoint(symbols[i]);
+        }
+        return result.toString();
     }
+
+    /** The naval configuration used by the tests below. */
+    static final String CONFIG = String.join("\n",
+        "A-Z",
+        "5 3",
+        "I MQ (AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)",
+        "II ME (FIXVYOMW) (CDKLHUP) (ESZ) (BJ) (GR) (NT) (A) (Q)",
+        "III MV (ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)",
+        "IV MJ (AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)",
+        "V MZ (AVOLDRWFIUQ)(BZKSMNHYC) (EGTJPX)",
+        "Beta N (ALBEVFCYODJWUGNMQTZSKPR) (HIX)",
+        "Gamma N (AFNIRLBSQWVXGUZDKMTPCOYJHE)",
+        "B R (AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP)",
+        "     (RX) (SZ) (TV)",
+        "C R (AR) (BD) (CO) (EJ) (FN) (GT) (HK) (IV) (LM) (PW)",
+        "     (QZ) (SX) (UY)", "");
+
+    /** Return the output of Main on configuration CONFIG and input
+     *  INPUT. */
+    static String runMain(String input) throws IOException {
+        return runMain(CONFIG, input);
+    }
+
+    /** Return the output of Main on configuration TEXT and input
+     *  INPUT. */
+    static String runMain(String text, String input) throws IOException {
+        Path dir = Files.createTempDirectory("enigma");
+        Path config = dir.resolve("test.conf");
+        Path in = dir.resolve("test.inp");
+        Path out = dir.resolve("test.out");
+        Files.write(config, text.getBytes(StandardCharsets.UTF_8));
+        Files.write(in, input.getBytes(StandardCharsets.UTF_8));
+        new Main(new String[] { config.toString(), in.toString(),
+            out.toString() }).process();
+        return new String(Files.readAllBytes(out), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void checkSeveralSettingsLines() throws IOException {
+        String output = runMain("* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) "
+            + "(BY)\nFROM his shoulder Hiawatha\n\n"
+            + "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)\r\n"
+            + "QVPQS OKOIL PUBKJ ZPISF XDW\r\n"
+            + "* C Gamma V II I ZZZZ\nHELLO WORLD\n");
+        Machine mach = MachineTest.navalMachine(
+            new String[] { "C", "Gamma", "V", "II", "I" }, "ZZZZ", null);
+        String expected = mach.convert("HELLOWORLD");
+        assertEquals("QVPQS OKOIL PUBKJ ZPISF XDW\n\n"
+                     + "FROMH ISSHO ULDER HIAWA THA\n"
+                     + expected.substring(0, 5) + " "
+                     + expected.substring(5) + "\n",
+                     output);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkMissingSettings() throws IOException {
+        runMain("\nHELLO\n");
+    }
+
 }
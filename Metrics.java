@@ -0,0 +1,203 @@
+package enigma;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/** A registry of named counters and latency histograms.  Main and
+ *  Machine report config loads, settings lines, characters converted,
+ *  rotor steps, message lines and output bytes to global() when ENABLED,
+ *  which is fixed at start-up by the system property "enigma.metrics",
+ *  so that when it is off the instrumentation is compiled away.  When on,
+ *  global().report() is written to the standard error at exit unless the
+ *  property "enigma.metrics.dump" is false.  The same events are also
+ *  emitted as Java Flight Recorder events (see Events), which cost
+ *  nothing unless a recording is running.
+ *  @author Areeb Khalfay
+ */
+final class Metrics {
+
+    /** An empty registry. */
+    Metrics() {
+    }
+
+    /** Return the registry to which the simulator reports. */
+    static Metrics global() {
+        return GLOBAL;
+    }
+
+    /** Return the counter named NAME, creating it if need be.  Callers
+     *  on hot paths may keep it rather than looking it up each time. */
+    LongAdder counter(String name) {
+        return _counters.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    /** Add DELTA to the counter named NAME. */
+    void add(String name, long delta) {
+        counter(name).add(delta);
+    }
+
+    /** Return the value of the counter named NAME, 0 if it has none. */
+    long count(String name) {
+        LongAdder counter = _counters.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /** Return the histogram named NAME, creating it if need be. */
+    Histogram histogram(String name) {
+        return _histograms.computeIfAbsent(name, k -> new Histogram());
+    }
+
+    /** Record a duration of NANOS nanoseconds in the histogram named
+     *  NAME. */
+    void record(String name, long nanos) {
+        histogram(name).record(nanos);
+    }
+
+    /** Return the current value of every counter, by name. */
+    Map<String, Long> counters() {
+        TreeMap<String, Long> result = new TreeMap<>();
+        _counters.forEach((name, counter) -> result.put(name, counter.sum()));
+        return result;
+    }
+
+    /** Return a summary of every counter and histogram, one per line. */
+    String report() {
+        StringBuilder report = new StringBuilder();
+        for (Map.Entry<String, Long> entry : counters().entrySet()) {
+            report.append(String.format("%-24s %d%n", entry.getKey(),
+                                        entry.getValue()));
+        }
+        for (String name : new TreeMap<>(_histograms).keySet()) {
+            report.append(String.format("%-24s %s%n", name,
+                                        _histograms.get(name)));
+        }
+        return report.toString();
+    }
+
+    /** A histogram of durations in nanoseconds, with one bucket per power
+     *  of two, safe for concurrent use. */
+    static final class Histogram {
+
+        /** Record a duration of NANOS nanoseconds. */
+        void record(long nanos) {
+            nanos = Math.max(nanos, 0);
+            _buckets.incrementAndGet(bucket(nanos));
+            _sum.add(nanos);
+            _max.accumulate(nanos);
+        }
+
+        /** Return the number of durations recorded. */
+        long count() {
+            long count = 0;
+            for (int b = 0; b < BUCKETS; b += 1) {
+                count += _buckets.get(b);
+            }
+            return count;
+        }
+
+        /** Return the sum of the durations recorded. */
+        long sum() {
+            return _sum.sum();
+        }
+
+        /** Return the longest duration recorded, or 0. */
+        long max() {
+            return _max.get();
+        }
+
+        /** Return an upper bound, within a factor of two, on the duration
+         *  that a fraction Q of those recorded do not exceed, or 0 if none
+         *  have been. */
+        long percentile(double q) {
+            long count = count();
+            long rank = (long) Math.ceil(q * count);
+            long seen = 0;
+            for (int b = 0; b < BUCKETS; b += 1) {
+                seen += _buckets.get(b);
+                if (seen >= rank && seen > 0) {
+                    return Math.min(b == 0 ? 0 : (1L << b) - 1, max());
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            long count = count();
+            return String.format("count=%d mean=%dns p50<=%dns p99<=%dns "
+                                 + "max=%dns", count,
+                                 count == 0 ? 0 : sum() / count,
+                                 percentile(0.5), percentile(0.99), max());
+        }
+
+        /** Return the bucket of NANOS: 0 for 0, and otherwise B for
+         *  2**(B-1) <= NANOS < 2**B. */
+        private static int bucket(long nanos) {
+            return Long.SIZE - Long.numberOfLeadingZeros(nanos);
+        }
+
+        /** Number of buckets. */
+        private static final int BUCKETS = Long.SIZE + 1;
+
+        /** Number of durations in each bucket. */
+        private final AtomicLongArray _buckets = new AtomicLongArray(BUCKETS);
+
+        /** Sum of the durations. */
+        private final LongAdder _sum = new LongAdder();
+
+        /** Longest duration. */
+        private final LongAccumulator _max = new LongAccumulator(Math::max, 0);
+    }
+
+    /** True iff the simulator reports to global(). */
+    static final boolean ENABLED = Boolean.getBoolean("enigma.metrics");
+
+    /** Counter of characters converted by Machine. */
+    static final String CHARACTERS = "characters";
+
+    /** Counter of single rotor movements made by Machine. */
+    static final String ROTOR_STEPS = "rotor.steps";
+
+    /** Counter of double steps made by Machine: keypresses on which a
+     *  rotor at its own notch advances itself and its left neighbour. */
+    static final String DOUBLE_STEPS = "rotor.double.steps";
+
+    /** Counter of message lines converted by Main. */
+    static final String MESSAGES = "messages";
+
+    /** Counter of bytes of output written by Main. */
+    static final String OUTPUT_BYTES = "output.bytes";
+
+    /** Histogram of the time taken to load a configuration. */
+    static final String CONFIG_LOAD = "config.load.nanos";
+
+    /** Histogram of the time taken by Main.setUp. */
+    static final String SETUP = "setup.nanos";
+
+    /** Histogram of the time taken to convert and write a message line. */
+    static final String MESSAGE = "message.nanos";
+
+    /** The registry to which the simulator reports. */
+    private static final Metrics GLOBAL = new Metrics();
+
+    static {
+        if (ENABLED && !"false".equals(
+                System.getProperty("enigma.metrics.dump"))) {
+            Runtime.getRuntime().addShutdownHook(new Thread(
+                () -> System.err.print(GLOBAL.report())));
+        }
+    }
+
+    /** Counters, by name. */
+    private final ConcurrentHashMap<String, LongAdder> _counters =
+        new ConcurrentHashMap<>();
+
+    /** Histograms, by name. */
+    private final ConcurrentHashMap<String, Histogram> _histograms =
+        new ConcurrentHashMap<>();
+
+}
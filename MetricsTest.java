@@ -0,0 +1,63 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.Map;
+
+/** The suite of all JUnit tests for the Metrics class.
+ *  @author Areeb Khalfay
+ */
+public class MetricsTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    @Test
+    public void checkCounters() {
+        Metrics metrics = new Metrics();
+        assertEquals(0, metrics.count(Metrics.CHARACTERS));
+        metrics.add(Metrics.CHARACTERS, 40);
+        metrics.counter(Metrics.CHARACTERS).increment();
+        metrics.add(Metrics.MESSAGES, 2);
+        assertEquals(41, metrics.count(Metrics.CHARACTERS));
+        Map<String, Long> counters = metrics.counters();
+        assertEquals(2, counters.size());
+        assertEquals(Long.valueOf(2), counters.get(Metrics.MESSAGES));
+        assertTrue(metrics.report().contains(Metrics.CHARACTERS));
+    }
+
+    @Test
+    public void checkHistogram() {
+        Metrics.Histogram histogram = new Metrics().histogram("h");
+        assertEquals(0, histogram.percentile(0.5));
+        for (int i = 1; i <= 100; i += 1) {
+            histogram.record(i * 10);
+        }
+        assertEquals(100, histogram.count());
+        assertEquals(50500, histogram.sum());
+        assertEquals(1000, histogram.max());
+        long median = histogram.percentile(0.5);
+        assertTrue(median >= 500 && median < 1000);
+        assertEquals(1000, histogram.percentile(1.0));
+        histogram.record(0);
+        assertEquals(0, histogram.percentile(0.001));
+    }
+
+    @Test
+    public void checkDisabledMachine() {
+        Machine mach = MachineTest.navalMachine(MachineTest.ROTORS, "AXLE",
+                                                MachineTest.PLUGBOARD);
+        mach.convert("FROM HIS SHOULDER HIAWATHA");
+        if (Metrics.ENABLED) {
+            assertTrue(mach.rotorSteps() >= 23);
+        } else {
+            assertEquals(0, mach.rotorSteps());
+            assertEquals(0, mach.doubleSteps());
+        }
+    }
+
+}
@@ -15,6 +15,25 @@ class MovingRotor extends Rotor {
     MovingRotor(String name, Permutation perm, String notches) {
         super(name, perm);
         _notches = notches;
+        _notchAt = new boolean[perm.size()];
+        int[] symbols = notches.codePoints().toArray();
+        for (int i = 1; i < symbols.length; i++) {
+            if (alphabet().containsCodePoint(symbols[i])) {
+                _notchAt[alphabet().toIndex(symbols[i])] = true;
+            }
+        }
+    }
+
+    /** A copy of ORIGINAL, as for Rotor.copy(). */
+    MovingRotor(MovingRotor original) {
+        super(original);
+        _notches = original._notches;
+        _notchAt = original._notchAt;
+    }
+
+    @Override
+    MovingRotor copy() {
+        return new MovingRotor(this);
     }
 
     @Override
@@ -24,12 +43,17 @@ class MovingRotor extends Rotor {
 
     @Override
     boolean atNotch() {
-        String positionString =
-                Character.toString(alphabet().toChar(super.setting()));
-        if (_notches.substring(1).contains(positionString)) {
-            return true;
-        }
-        return false;
+        return _notchAt[setting()];
+    }
+
+    @Override
+    boolean hasNotchAt(int posn) {
+        return _notchAt[posn];
+    }
+
+    /** Return the characters at whose settings I have notches. */
+    String notches() {
+        return _notches.substring(1);
     }
 
     @Override
@@ -39,4 +63,7 @@ class MovingRotor extends Rotor {
     /** String of the notches for given Moving Rotor. */
     private String _notches;
 
+    /** _notchAt[P] is true iff there is a notch at setting P. */
+    private final boolean[] _notchAt;
+
 }
@@ -71,4 +71,64 @@ public class MovingRotorTest {
         checkRotor("Rotor I set", UPPER_STRING, NAVALZ_MAP.get("I"));
     }
 
+    @Test
+    public void checkRotorSetWraps() {
+        setRotor("I", NAVALA, "");
+        rotor.set(26 + 25);
+        assertEquals(25, rotor.setting());
+        checkRotor("Rotor I set past Z", UPPER_STRING, NAVALZ_MAP.get("I"));
+        rotor.set(-1);
+        checkRotor("Rotor I set below A", UPPER_STRING, NAVALZ_MAP.get("I"));
+    }
+
+    @Test
+    public void checkCopy() {
+        setRotor("VI", NAVALA, "MZM");
+        Rotor copy = rotor.copy();
+        rotor.set(12);
+        assertEquals(0, copy.setting());
+        assertTrue(rotor.atNotch());
+        assertFalse(copy.atNotch());
+        copy.set(25);
+        assertTrue(copy.atNotch());
+        assertEquals(12, rotor.setting());
+        assertSame(rotor.forwardTable(), copy.forwardTable());
+    }
+
+    @Test
+    public void checkTablesBuiltLazily() {
+        setRotor("I", NAVALA, "");
+        assertEquals(0, rotor.tableBytes());
+        rotor.convertForward(0);
+        assertEquals(26 * 26 * 4, rotor.tableBytes());
+        rotor.convertBackward(0);
+        assertEquals(2 * 26 * 26 * 4, rotor.tableBytes());
+    }
+
+    @Test
+    public void checkTablesAtEveryPosition() {
+        setRotor("III", NAVALA, "");
+        Permutation perm = rotor.permutation();
+        for (int posn = 0; posn < 26; posn += 1) {
+            rotor.set(posn);
+            for (int p = 0; p < 26; p += 1) {
+                int expected = perm.wrap(perm.permute(posn + p) - posn);
+                assertEquals(msg("III", "forward %d at %d", p, posn),
+                             expected, rotor.convertForward(p));
+                assertEquals(msg("III", "backward %d at %d", expected, posn),
+                             p, rotor.convertBackward(expected));
+            }
+        }
+    }
+
+    @Test
+    public void checkAtNotch() {
+        setRotor("VI", NAVALA, "MZM");
+        for (int posn = 0; posn < 26; posn += 1) {
+            rotor.set(posn);
+            assertEquals(msg("VI", "notch at %d", posn),
+                         posn == 12 || posn == 25, rotor.atNotch());
+        }
+    }
+
 }
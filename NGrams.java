@@ -0,0 +1,302 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static enigma.EnigmaException.*;
+
+/** Log-probabilities of the n-grams (strings of N letters) of an
+ *  alphabet, for scoring how much a candidate decryption looks like the
+ *  language of a training text.  Scores are held in a flat table of
+ *  floats indexed by the n-gram's letters read as a number in base
+ *  alphabet size, either on the heap or memory-mapped from a table file
+ *  written by write(), so that a large table is shared by every process
+ *  using it and costs nothing to load.
+ *
+ *  A table file holds the magic number MAGIC, a two-byte version, a
+ *  one-byte n-gram length and an unused byte, the four-byte size of the
+ *  alphabet and each of its symbols as a four-byte code point, and
+ *  finally each score as a little-endian float.  The header is big-endian.
+ *  @author Areeb Khalfay
+ */
+class NGrams {
+
+    /** N-gram scores over ALPHABET, SCORES[K] being the log-probability
+     *  of the n-gram numbered K.  SCORES has alphabet size ** N
+     *  entries, and is used, not copied. */
+    NGrams(Alphabet alphabet, int n, float[] scores) {
+        this(alphabet, n, FloatBuffer.wrap(scores));
+    }
+
+    /** N-gram scores over ALPHABET held in SCORES, as for
+     *  NGrams(ALPHABET, N, float[]). */
+    private NGrams(Alphabet alphabet, int n, FloatBuffer scores) {
+        _alphabet = alphabet;
+        _size = alphabet.size();
+        _n = n;
+        if (scores.limit() != count(_size, n)) {
+            throw error("%d-gram table should have %d entries", n,
+                        count(_size, n));
+        }
+        _scores = scores;
+        _modulus = scores.limit() / _size;
+    }
+
+    /** Return the n-gram scores of CORPUS, in which symbols outside
+     *  ALPHABET (after conversion to upper case) separate words and are
+     *  otherwise ignored.  N-grams that do not occur in CORPUS get a
+     *  score below that of any that do. */
+    static NGrams train(Alphabet alphabet, int n, CharSequence corpus) {
+        Counter counter = new Counter(alphabet, n);
+        for (int i = 0; i < corpus.length(); ) {
+            int ch = Character.codePointAt(corpus, i);
+            counter.add(ch);
+            i += Character.charCount(ch);
+        }
+        return counter.scores();
+    }
+
+    /** Return the n-gram scores of the text read from CORPUS, as for
+     *  train(ALPHABET, N, CharSequence).  The corpus is read in one pass
+     *  and is not held in memory. */
+    static NGrams train(Alphabet alphabet, int n, ChannelReader corpus) {
+        Counter counter = new Counter(alphabet, n);
+        for (int ch = corpus.readCodePoint(); ch >= 0;
+             ch = corpus.readCodePoint()) {
+            counter.add(ch);
+        }
+        return counter.scores();
+    }
+
+    /** Return the n-gram scores in the table file named NAME, which must
+     *  have been written for ALPHABET.  The scores are memory-mapped, not
+     *  read. */
+    static NGrams load(String name, Alphabet alphabet) {
+        ByteBuffer table;
+        try (FileChannel file = FileChannel.open(Paths.get(name),
+                                                 StandardOpenOption.READ)) {
+            table = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+        } catch (IOException | RuntimeException excp) {
+            throw error("could not open %s", name);
+        }
+        try {
+            if (table.getInt() != MAGIC || table.getShort() != VERSION) {
+                throw error("%s is not an n-gram table", name);
+            }
+            int n = table.get();
+            table.get();
+            int size = table.getInt();
+            if (size != alphabet.size()) {
+                throw error("%s is for another alphabet", name);
+            }
+            for (int i = 0; i < size; i += 1) {
+                if (table.getInt() != alphabet.toCodePoint(i)) {
+                    throw error("%s is for another alphabet", name);
+                }
+            }
+            FloatBuffer scores = table.slice()
+                .order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+            scores.limit(count(size, n));
+            return new NGrams(alphabet, n, scores.slice());
+        } catch (RuntimeException excp) {
+            if (excp instanceof EnigmaException) {
+                throw excp;
+            }
+            throw error("%s is not a valid n-gram table", name);
+        }
+    }
+
+    /** Write me to the table file named NAME. */
+    void write(String name) {
+        int header = HEADER_SIZE + _size * Integer.BYTES;
+        ByteBuffer out = ByteBuffer.allocate(
+            header + _scores.limit() * Float.BYTES);
+        out.putInt(MAGIC).putShort(VERSION).put((byte) _n).put((byte) 0)
+            .putInt(_size);
+        for (int i = 0; i < _size; i += 1) {
+            out.putInt(_alphabet.toCodePoint(i));
+        }
+        out.position(header);
+        out.order(ByteOrder.LITTLE_ENDIAN);
+        for (int k = 0; k < _scores.limit(); k += 1) {
+            out.putFloat(_scores.get(k));
+        }
+        out.flip();
+        try (FileChannel file = FileChannel.open(Paths.get(name),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) {
+                file.write(out);
+            }
+        } catch (IOException | RuntimeException excp) {
+            throw error("could not write %s", name);
+        }
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the length of my n-grams. */
+    int n() {
+        return _n;
+    }
+
+    /** Return the score of the n-gram numbered INDEX. */
+    float score(int index) {
+        return _scores.get(index);
+    }
+
+    /** Return the sum of the scores of the n-grams of the LEN letters of
+     *  TEXT starting at OFF, given as indices in my alphabet. */
+    double score(int[] text, int off, int len) {
+        double sum = 0;
+        int index = 0;
+        for (int i = 0; i < len; i += 1) {
+            index = (index % _modulus) * _size + text[off + i];
+            if (i >= _n - 1) {
+                sum += _scores.get(index);
+            }
+        }
+        return sum;
+    }
+
+    /** Return the sum of the scores of the n-grams of the LEN characters
+     *  of TEXT starting at OFF, which hold symbols of my alphabet, as
+     *  surrogate pairs if need be, or spaces, as written by
+     *  Machine.convert(char[], ...).  Spaces are skipped.  Allocates
+     *  nothing. */
+    double score(char[] text, int off, int len) {
+        double sum = 0;
+        int index = 0, run = 0;
+        for (int i = off; i < off + len; ) {
+            int ch = Character.codePointAt(text, i, off + len);
+            i += Character.charCount(ch);
+            if (ch != ' ') {
+                index = (index % _modulus) * _size + _alphabet.toIndex(ch);
+                run += 1;
+                if (run >= _n) {
+                    sum += _scores.get(index);
+                }
+            }
+        }
+        return sum;
+    }
+
+    /** Counts the n-grams of a training text. */
+    private static class Counter {
+
+        /** A counter of the N-grams of ALPHABET. */
+        Counter(Alphabet alphabet, int n) {
+            _alphabet = alphabet;
+            _n = n;
+            _size = alphabet.size();
+            _counts = new long[count(_size, n)];
+            _modulus = _counts.length / _size;
+        }
+
+        /** Count the n-gram ending at the next code point of the text,
+         *  CH, if it has one. */
+        void add(int ch) {
+            ch = Character.toUpperCase(ch);
+            if (!_alphabet.containsCodePoint(ch)) {
+                _run = 0;
+                return;
+            }
+            _index = (_index % _modulus) * _size + _alphabet.toIndex(ch);
+            _run += 1;
+            if (_run >= _n) {
+                _counts[_index] += 1;
+                _total += 1;
+            }
+        }
+
+        /** Return the scores of the n-grams counted. */
+        NGrams scores() {
+            if (_total == 0) {
+                throw error("corpus has no %d-grams", _n);
+            }
+            float[] scores = new float[_counts.length];
+            for (int k = 0; k < _counts.length; k += 1) {
+                double count = _counts[k] == 0 ? FLOOR : _counts[k];
+                scores[k] = (float) Math.log10(count / _total);
+            }
+            return new NGrams(_alphabet, _n, scores);
+        }
+
+        /** The alphabet counted. */
+        private final Alphabet _alphabet;
+
+        /** Length of the n-grams counted. */
+        private final int _n;
+
+        /** Size of the alphabet. */
+        private final int _size;
+
+        /** Count of each n-gram. */
+        private final long[] _counts;
+
+        /** Number of (n-1)-grams. */
+        private final int _modulus;
+
+        /** Number of the n-gram ending at the last character. */
+        private int _index;
+
+        /** Number of letters since the last separator. */
+        private int _run;
+
+        /** Number of n-grams counted. */
+        private long _total;
+    }
+
+    /** Return the number of n-grams of length N over an alphabet of SIZE
+     *  letters. */
+    private static int count(int size, int n) {
+        if (n < 1) {
+            throw error("n-grams must have at least one letter");
+        }
+        long count = 1;
+        for (int i = 0; i < n; i += 1) {
+            count *= size;
+            if (count > Integer.MAX_VALUE / Float.BYTES) {
+                throw error("too many %d-grams", n);
+            }
+        }
+        return (int) count;
+    }
+
+    /** First four bytes of a table file: "ENGR" in ASCII. */
+    static final int MAGIC = 0x454e4752;
+
+    /** Version of the table file format. */
+    private static final short VERSION = 2;
+
+    /** Bytes in a table file before the symbols of the alphabet. */
+    private static final int HEADER_SIZE = 12;
+
+    /** Count given to n-grams missing from a training text. */
+    private static final double FLOOR = 0.01;
+
+    /** The alphabet of my n-grams. */
+    private final Alphabet _alphabet;
+
+    /** Size of my alphabet. */
+    private final int _size;
+
+    /** Length of my n-grams. */
+    private final int _n;
+
+    /** Score of each n-gram. */
+    private final FloatBuffer _scores;
+
+    /** Number of (n-1)-grams, by which a rolling index is reduced before
+     *  the next letter is added. */
+    private final int _modulus;
+
+}
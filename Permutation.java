@@ -2,8 +2,7 @@ package enigma;
 
 import static enigma.EnigmaException.*;
 
-import java.util.Scanner;
-import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Represents a permutation of a range of integers starting at 0 corresponding
@@ -23,45 +22,120 @@ class Permutation {
 
     Permutation(String cycles, Alphabet alphabet) {
         _alphabet = alphabet;
-        listOfCycles(cycles, _cycles);
-    }
-
-    /**
-     * Helper Method to instantiate the list of cycles.
-     * @param cycles String
-     * @param cyclesArrayList ArrayList<String>
-     * @returns ArrayList
-     */
-    ArrayList<String> listOfCycles(String cycles,
-                                   ArrayList<String> cyclesArrayList) {
-        Scanner scannerCycles = new Scanner(cycles).useDelimiter("[(]");
-        int x = 0;
-        while (scannerCycles.hasNext()) {
-            String str = scannerCycles.next().replace("(", "").
-                    replace(")", "").trim();
-            _cycles.add(x, str);
-            x++;
-        }
-        Character[] alphabet = new Character[]{'A', 'B', 'C', 'D',
-            'E', 'F', 'G', 'H', 'I', 'J',
-            'K', 'L', 'M', 'N', 'O', 'P', 'Q', 'R', 'S',
-            'T', 'U', 'V', 'W', 'X', 'Y', 'Z'};
-        for (Character newchar: alphabet) {
-            if (_alphabet.contains(newchar)) {
-                if (!cycles.contains(Character.toString(newchar))) {
-                    _cycles.add(Character.toString(newchar));
+        _forward = new int[alphabet.size()];
+        _inverse = new int[alphabet.size()];
+        for (int i = 0; i < _forward.length; i++) {
+            _forward[i] = i;
+        }
+        compileCycles(cycles);
+        for (int i = 0; i < _forward.length; i++) {
+            _inverse[_forward[i]] = i;
+        }
+    }
+
+    /**
+     * A Permutation of ALPHABET that maps each index I to FORWARD[I],
+     * which must be a permutation of 0 .. ALPHABET.size() - 1.  FORWARD
+     * is copied, so later changes to it do not affect me.
+     */
+    Permutation(int[] forward, Alphabet alphabet) {
+        if (forward.length != alphabet.size()) {
+            throw error("permutation table has %d entries, not %d",
+                    forward.length, alphabet.size());
+        }
+        _alphabet = alphabet;
+        _forward = forward.clone();
+        _inverse = new int[forward.length];
+        Arrays.fill(_inverse, -1);
+        for (int i = 0; i < _forward.length; i++) {
+            int image = _forward[i];
+            if (image < 0 || image >= _forward.length
+                || _inverse[image] >= 0) {
+                throw error("permutation table is not a permutation");
+            }
+            _inverse[image] = i;
+        }
+    }
+
+    /**
+     * A Permutation of ALPHABET whose tables are FORWARD and its inverse
+     * INVERSE, which are used directly and not checked.
+     */
+    private Permutation(int[] forward, int[] inverse, Alphabet alphabet) {
+        _alphabet = alphabet;
+        _forward = forward;
+        _inverse = inverse;
+    }
+
+    /**
+     * Helper Method that compiles the cycle notation in CYCLES into
+     * the forward table, one cycle at a time.
+     */
+    private void compileCycles(String cycles) {
+        boolean[] placed = new boolean[size()];
+        int start = -1;
+        for (int i = 0; i < cycles.length(); i++) {
+            char ch = cycles.charAt(i);
+            if (ch == '(') {
+                if (start >= 0) {
+                    throw error("nested '(' in cycles %s", cycles);
+                }
+                start = i + 1;
+            } else if (ch == ')') {
+                if (start < 0) {
+                    throw error("unmatched ')' in cycles %s", cycles);
                 }
+                addCycle(cycles.substring(start, i), placed);
+                start = -1;
+            } else if (start < 0 && !Character.isWhitespace(ch)) {
+                throw error("character '%c' outside of a cycle", ch);
             }
         }
-        return _cycles;
+        if (start >= 0) {
+            throw error("unterminated cycle in %s", cycles);
+        }
     }
 
     /**
      * Add the cycle c0->c1->...->cm->c0 to the permutation, where CYCLE is
-     * c0c1...cm.
+     * c0c1...cm, marking the indices it uses in PLACED.
      */
-    private void addCycle(String cycle) {
-        _cycles.add(cycle);
+    private void addCycle(String cycle, boolean[] placed) {
+        int first = -1, prev = -1;
+        for (int ch : cycle.codePoints().toArray()) {
+            if (Character.isWhitespace(ch)) {
+                continue;
+            }
+            prev = extendCycle(_alphabet, _forward, placed, prev, ch);
+            if (first < 0) {
+                first = prev;
+            }
+        }
+        if (first >= 0) {
+            _forward[prev] = first;
+        }
+    }
+
+    /**
+     * Add the code point CH of ALPHABET to the cycle being compiled into
+     * FORWARD, after the index PREV (-1 if CH starts the cycle), marking
+     * its index in PLACED, and return that index.  The caller closes the
+     * cycle by mapping its last index to its first.
+     */
+    static int extendCycle(Alphabet alphabet, int[] forward,
+                           boolean[] placed, int prev, int ch) {
+        if (!alphabet.containsCodePoint(ch)) {
+            throw error("character '%c' is not in the alphabet", ch);
+        }
+        int index = alphabet.toIndex(ch);
+        if (placed[index]) {
+            throw error("character '%c' appears in more than one place", ch);
+        }
+        placed[index] = true;
+        if (prev >= 0) {
+            forward[prev] = index;
+        }
+        return index;
     }
 
     /**
@@ -79,7 +153,7 @@ class Permutation {
      * Returns the size of the alphabet I permute.
      */
     int size() {
-        return _alphabet.size();
+        return _forward.length;
     }
 
     /**
@@ -87,11 +161,10 @@ class Permutation {
      * alphabet size.
      */
     int permute(int p) {
-        int checkedInput = wrap(p);
-        char inputChar = _alphabet.toChar(checkedInput);
-        char outputChar = permute(inputChar);
-        int outputInt = _alphabet.toInt(outputChar);
-        return outputInt;
+        if (p >= 0 && p < _forward.length) {
+            return _forward[p];
+        }
+        return _forward[wrap(p)];
     }
 
     /**
@@ -99,11 +172,10 @@ class Permutation {
      * to  C modulo the alphabet size.
      */
     int invert(int c) {
-        int checkedInput = wrap(c);
-        char inputChar = _alphabet.toChar(checkedInput);
-        char outputChar = invert(inputChar);
-        int outputInt = _alphabet.toInt(outputChar);
-        return outputInt;
+        if (c >= 0 && c < _inverse.length) {
+            return _inverse[c];
+        }
+        return _inverse[wrap(c)];
     }
 
     /**
@@ -111,39 +183,14 @@ class Permutation {
      * in ALPHABET, and converting the result to a character of ALPHABET.
      */
     char permute(char p) {
-        if (_cycles.isEmpty()) {
-            return p;
-        }
-        String stringP = Character.toString(p);
-        for (String x : _cycles) {
-            if (x.contains(stringP)) {
-                int currentindex = x.indexOf(stringP);
-                if (currentindex + 1 == x.length()) {
-                    return x.charAt(0);
-                } else {
-                    return x.charAt(currentindex + 1);
-                }
-            }
-        }
-        return p;
+        return _alphabet.toChar(_forward[_alphabet.toInt(p)]);
     }
 
     /**
      * Return the result of applying the inverse of this permutation to C.
      */
     char invert(char c) {
-        String stringP = Character.toString(c);
-        for (String x : _cycles) {
-            if (x.contains(stringP)) {
-                int currentindex = x.indexOf(c);
-                if (currentindex == 0) {
-                    return x.charAt(x.length() - 1);
-                } else {
-                    return x.charAt(currentindex - 1);
-                }
-            }
-        }
-        return c;
+        return _alphabet.toChar(_inverse[_alphabet.toInt(c)]);
     }
 
     /**
@@ -158,21 +205,170 @@ class Permutation {
      * permutation for which no value maps to itself).
      */
     boolean derangement() {
-        for (String x : _cycles) {
-            if (x.length() == 1) {
+        for (int i = 0; i < _forward.length; i++) {
+            if (_forward[i] == i) {
                 return false;
             }
         }
         return true;
     }
 
+    /**
+     * Return the permutation that applies OTHER and then me, so that
+     * compose(OTHER).permute(P) == permute(OTHER.permute(P)).
+     */
+    Permutation compose(Permutation other) {
+        checkSize(other);
+        int[] forward = new int[size()];
+        int[] inverse = new int[size()];
+        for (int i = 0; i < forward.length; i++) {
+            int image = _forward[other._forward[i]];
+            forward[i] = image;
+            inverse[image] = i;
+        }
+        return new Permutation(forward, inverse, _alphabet);
+    }
+
+    /**
+     * Return my inverse.
+     */
+    Permutation inverse() {
+        return new Permutation(_inverse, _forward, _alphabet);
+    }
+
+    /**
+     * Return me applied K times (my inverse applied -K times if K is
+     * negative), computed one cycle at a time rather than by repeated
+     * composition.
+     */
+    Permutation power(long k) {
+        int[] forward = new int[size()];
+        int[] inverse = new int[size()];
+        int[] cycle = new int[size()];
+        boolean[] seen = new boolean[size()];
+        for (int start = 0; start < forward.length; start++) {
+            if (seen[start]) {
+                continue;
+            }
+            int length = 0;
+            for (int i = start; !seen[i]; i = _forward[i]) {
+                seen[i] = true;
+                cycle[length++] = i;
+            }
+            int shift = (int) Math.floorMod(k, (long) length);
+            for (int j = 0; j < length; j++) {
+                int image = cycle[(j + shift) % length];
+                forward[cycle[j]] = image;
+                inverse[image] = cycle[j];
+            }
+        }
+        return new Permutation(forward, inverse, _alphabet);
+    }
+
+    /**
+     * Return G me G^-1: the permutation that maps G(P) to G(permute(P)),
+     * whose cycles are mine with each index I replaced by G(I).
+     */
+    Permutation conjugate(Permutation g) {
+        checkSize(g);
+        int[] forward = new int[size()];
+        int[] inverse = new int[size()];
+        for (int i = 0; i < forward.length; i++) {
+            int from = g._forward[i], image = g._forward[_forward[i]];
+            forward[from] = image;
+            inverse[image] = from;
+        }
+        return new Permutation(forward, inverse, _alphabet);
+    }
+
+    /**
+     * Return the lengths of my cycles, fixed points included, longest
+     * first.  Two permutations are conjugate iff their cycle types are
+     * equal.  Computed once.
+     */
+    int[] cycleType() {
+        int[] type = _cycleType;
+        if (type == null) {
+            int[] lengths = new int[size()];
+            int count = 0;
+            boolean[] seen = new boolean[size()];
+            for (int start = 0; start < size(); start++) {
+                int length = 0;
+                for (int i = start; !seen[i]; i = _forward[i]) {
+                    seen[i] = true;
+                    length += 1;
+                }
+                if (length > 0) {
+                    lengths[count++] = length;
+                }
+            }
+            type = Arrays.copyOf(lengths, count);
+            Arrays.sort(type);
+            for (int i = 0, j = count - 1; i < j; i++, j--) {
+                int t = type[i];
+                type[i] = type[j];
+                type[j] = t;
+            }
+            _cycleType = type;
+        }
+        return type.clone();
+    }
+
+    /**
+     * Return my cycles in the notation read by Permutation(String,
+     * Alphabet), omitting fixed points: each cycle starts at its smallest
+     * index, and cycles are in the order of those indices.
+     */
+    String cycles() {
+        StringBuilder result = new StringBuilder();
+        boolean[] seen = new boolean[size()];
+        for (int start = 0; start < size(); start++) {
+            if (seen[start] || _forward[start] == start) {
+                continue;
+            }
+            if (result.length() > 0) {
+                result.append(' ');
+            }
+            result.append('(');
+            for (int i = start; !seen[i]; i = _forward[i]) {
+                seen[i] = true;
+                result.appendCodePoint(_alphabet.toCodePoint(i));
+            }
+            result.append(')');
+        }
+        return result.toString();
+    }
+
+    /**
+     * Check that OTHER permutes as many indices as I do.
+     */
+    private void checkSize(Permutation other) {
+        if (other.size() != size()) {
+            throw error("permutations of %d and %d indices", size(),
+                    other.size());
+        }
+    }
+
     /**
      * Alphabet of this permutation.
      */
     private Alphabet _alphabet;
 
     /**
-     * ArrayList of Cycles of this permutation.
+     * Compiled table mapping each index to its image under this
+     * permutation.
+     */
+    private final int[] _forward;
+
+    /**
+     * Compiled table mapping each index to its preimage under this
+     * permutation, so that _inverse[_forward[i]] == i.
+     */
+    private final int[] _inverse;
+
+    /**
+     * My cycle type, once computed.  Volatile so that a thread reading it
+     * sees the whole array another thread stored.
      */
-    private ArrayList<String> _cycles = new ArrayList<>();
+    private volatile int[] _cycleType;
 }
@@ -5,6 +5,8 @@ import org.junit.Rule;
 import org.junit.rules.Timeout;
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
+
 import static enigma.TestUtils.*;
 
 /** The suite of all JUnit tests for the Permutation class.
@@ -43,6 +45,15 @@ public class PermutationTest {
         }
     }
 
+    /** Return the characters of FROMALPHA permuted by P. */
+    private static String permuted(Permutation p, String fromAlpha) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < fromAlpha.length(); i += 1) {
+            result.append(p.permute(fromAlpha.charAt(i)));
+        }
+        return result.toString();
+    }
+
     /* ***** TESTS ***** */
 
     @Test
@@ -51,4 +62,102 @@ public class PermutationTest {
         checkPerm("identity", UPPER_STRING, UPPER_STRING);
     }
 
+    @Test
+    public void checkNavalA() {
+        for (String name : NAVALA_MAP.keySet()) {
+            perm = new Permutation(NAVALA.get(name), UPPER);
+            checkPerm(name, UPPER_STRING, NAVALA_MAP.get(name));
+        }
+    }
+
+    @Test
+    public void checkWrappedIndices() {
+        perm = new Permutation(NAVALA.get("I"), UPPER);
+        assertEquals(perm.permute(0), perm.permute(26));
+        assertEquals(perm.permute(25), perm.permute(-1));
+        assertEquals(perm.invert(3), perm.invert(-23));
+    }
+
+    @Test
+    public void checkDerangement() {
+        assertFalse(new Permutation(NAVALA.get("I"), UPPER).derangement());
+        assertTrue(new Permutation(NAVALA.get("B"), UPPER).derangement());
+    }
+
+    @Test
+    public void checkCompose() {
+        Permutation p = new Permutation(NAVALA.get("I"), UPPER);
+        Permutation q = new Permutation(NAVALA.get("II"), UPPER);
+        perm = p.compose(q);
+        for (int i = 0; i < perm.size(); i += 1) {
+            assertEquals(p.permute(q.permute(i)), perm.permute(i));
+            assertEquals(i, perm.invert(perm.permute(i)));
+        }
+        perm = p.compose(p.inverse());
+        checkPerm("p p^-1", UPPER_STRING, UPPER_STRING);
+    }
+
+    @Test
+    public void checkPower() {
+        Permutation p = new Permutation(NAVALA.get("I"), UPPER);
+        Permutation repeated = new Permutation("", UPPER);
+        for (int k = 0; k < 12; k += 1) {
+            perm = p.power(k);
+            checkPerm("power " + k, UPPER_STRING,
+                      permuted(repeated, UPPER_STRING));
+            repeated = p.compose(repeated);
+        }
+        perm = p.power(-1);
+        checkPerm("power -1", UPPER_STRING, permuted(p.inverse(),
+                                                      UPPER_STRING));
+        perm = p.power(7L * 4 * 3 * 2 * 1_000_000_000L);
+        checkPerm("power of order", UPPER_STRING, UPPER_STRING);
+    }
+
+    @Test
+    public void checkConjugateAndCycleType() {
+        Permutation p = new Permutation("(ABC) (DE)", UPPER);
+        Permutation g = new Permutation(NAVALA.get("III"), UPPER);
+        perm = p.conjugate(g);
+        for (int i = 0; i < perm.size(); i += 1) {
+            assertEquals(g.permute(p.permute(i)),
+                         perm.permute(g.permute(i)));
+        }
+        assertArrayEquals(p.cycleType(), perm.cycleType());
+        int[] type = new int[23];
+        type[0] = 3;
+        type[1] = 2;
+        Arrays.fill(type, 2, type.length, 1);
+        assertArrayEquals(type, p.cycleType());
+        assertEquals("(ABC) (DE)", p.cycles());
+        Permutation b = new Permutation(NAVALA.get("B"), UPPER);
+        assertEquals(13, b.cycleType().length);
+        assertEquals(b.permute('Q'), new Permutation(b.cycles(), UPPER)
+                     .permute('Q'));
+    }
+
+    @Test
+    public void checkTableCopied() {
+        int[] forward = new int[UPPER.size()];
+        for (int i = 0; i < forward.length; i += 1) {
+            forward[i] = (i + 1) % forward.length;
+        }
+        perm = new Permutation(forward, UPPER);
+        forward[0] = 0;
+        forward[1] = 1;
+        assertEquals(1, perm.permute(0));
+        assertEquals(0, perm.invert(1));
+        assertEquals(1, perm.cycleType().length);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkRepeatedCharacter() {
+        new Permutation("(ABC) (CD)", UPPER);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkCharacterNotInAlphabet() {
+        new Permutation("(AB) (C1)", UPPER);
+    }
+
 }
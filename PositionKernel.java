@@ -0,0 +1,130 @@
+package enigma;
+
+import java.lang.reflect.Constructor;
+
+/** Evaluates many start positions of one rotor order against the same
+ *  short ciphertext, for key searches.  Start positions are numbered by
+ *  reading the positions of slots 1 to numRotors()-1 as the digits of a
+ *  number in base alphabet size, the leftmost slot's being the most
+ *  significant.  For each, the kernel decrypts the ciphertext and counts
+ *  its coincidences: the number of ordered pairs of places in the
+ *  decryption holding the same letter, from which its index of
+ *  coincidence follows.
+ *
+ *  This class does the work one start position at a time.  kernel()
+ *  returns a VectorPositionKernel, which evaluates a vector's worth of
+ *  start positions at once with the same results, when it has been
+ *  compiled (with "make vector") and the JDK's vector module is present.
+ *  A kernel holds scratch space, so each thread
+ *  needs its own.
+ *  @author Areeb Khalfay
+ */
+class PositionKernel {
+
+    /** A kernel for the rotors and plugboard of SPEC and the ciphertext
+     *  CIPHER, given as indices in SPEC's alphabet. */
+    PositionKernel(MachineSpec spec, int[] cipher) {
+        _spec = spec;
+        _cipher = cipher;
+        _size = spec.alphabet().size();
+        _counts = new int[_size];
+    }
+
+    /** Return the fastest kernel available for SPEC and CIPHER: a
+     *  VectorPositionKernel if it was compiled, the vector module is
+     *  present and it is not disabled by setting the system property
+     *  "enigma.vector" to false, and a PositionKernel otherwise. */
+    static PositionKernel kernel(MachineSpec spec, int[] cipher) {
+        if (VECTOR_KERNEL != null) {
+            try {
+                return VECTOR_KERNEL.newInstance(spec, cipher);
+            } catch (ReflectiveOperationException | LinkageError excp) {
+                return new PositionKernel(spec, cipher);
+            }
+        }
+        return new PositionKernel(spec, cipher);
+    }
+
+    /** Return the constructor of VectorPositionKernel, or null if it may
+     *  not be used.  It is compiled separately (see vector/), and found
+     *  only by reflection, so that the rest of the simulator needs no
+     *  incubating module to compile or run. */
+    private static Constructor<? extends PositionKernel> vectorKernel() {
+        if ("false".equals(System.getProperty("enigma.vector"))
+            || ModuleLayer.boot().findModule("jdk.incubator.vector")
+                .isEmpty()) {
+            return null;
+        }
+        try {
+            return Class.forName("enigma.VectorPositionKernel")
+                .asSubclass(PositionKernel.class)
+                .getDeclaredConstructor(MachineSpec.class, int[].class);
+        } catch (ReflectiveOperationException | LinkageError excp) {
+            return null;
+        }
+    }
+
+    /** Return my spec. */
+    MachineSpec spec() {
+        return _spec;
+    }
+
+    /** Return the number of start positions evaluated at once. */
+    int lanes() {
+        return 1;
+    }
+
+    /** Set OUT[K] to the number of coincidences of the decryption from
+     *  the start position numbered FROM + K, for 0 <= K < COUNT. */
+    void coincidences(int from, int count, long[] out) {
+        int[] positions = new int[_spec.numRotors()];
+        for (int k = 0; k < count; k += 1) {
+            decode(from + k, positions);
+            out[k] = coincidences(positions);
+        }
+    }
+
+    /** Return the number of coincidences of the decryption from the start
+     *  position POSITIONS, which is changed. */
+    long coincidences(int[] positions) {
+        Stepping stepping = _spec.stepping();
+        for (int c = 0; c < _size; c += 1) {
+            _counts[c] = 0;
+        }
+        long same = 0;
+        for (int i = 0; i < _cipher.length; i += 1) {
+            stepping.step(positions);
+            int p = _spec.path(positions, _cipher[i]);
+            same += _counts[p];
+            _counts[p] += 1;
+        }
+        return 2 * same;
+    }
+
+    /** Set POSITIONS to the start position numbered INDEX. */
+    void decode(int index, int[] positions) {
+        positions[0] = 0;
+        for (int slot = positions.length - 1; slot > 0; slot -= 1) {
+            positions[slot] = index % _size;
+            index /= _size;
+        }
+    }
+
+    /** Constructor of VectorPositionKernel, or null if it may not be
+     *  used. */
+    private static final Constructor<? extends PositionKernel>
+        VECTOR_KERNEL = vectorKernel();
+
+    /** The rotors and plugboard. */
+    private final MachineSpec _spec;
+
+    /** The ciphertext. */
+    private final int[] _cipher;
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** Number of times each letter has been seen. */
+    private final int[] _counts;
+
+}
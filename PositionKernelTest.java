@@ -0,0 +1,78 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.MachineTest.*;
+
+/** The suite of all JUnit tests for the PositionKernel and
+ *  VectorPositionKernel classes.
+ *  @author Areeb Khalfay
+ */
+public class PositionKernelTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /** Return MSG as indices in the alphabet A-Z. */
+    private static int[] letters(String msg) {
+        int[] result = new int[msg.length()];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = msg.charAt(i) - 'A';
+        }
+        return result;
+    }
+
+    /** Check that the kernels for SPEC agree with each other and with
+     *  MACHINE's own conversion, for COUNT start positions from FROM. */
+    private void checkKernels(MachineSpec spec, int from, int count) {
+        int[] cipher = letters(randomMessage(300, 5).replace(" ", ""));
+        PositionKernel scalar = new PositionKernel(spec, cipher);
+        PositionKernel fastest = PositionKernel.kernel(spec, cipher);
+        long[] expected = new long[count];
+        long[] actual = new long[count];
+        scalar.coincidences(from, count, expected);
+        fastest.coincidences(from, count, actual);
+        assertArrayEquals(expected, actual);
+
+        int[] start = new int[spec.numRotors()];
+        for (int k = 0; k < count; k += 97) {
+            scalar.decode(from + k, start);
+            MachineState state = new MachineState(start.clone());
+            int[] counts = new int[26];
+            long same = 0;
+            for (int c : cipher) {
+                int p = spec.convert(state, c);
+                same += 2 * counts[p];
+                counts[p] += 1;
+            }
+            assertEquals(same, expected[k]);
+        }
+    }
+
+    @Test
+    public void checkWithoutPlugboard() {
+        checkKernels(navalMachine(ROTORS, "AAAA", null).spec(),
+                     26 * 26 * 26 * 7 + 26 * 17, 1000);
+    }
+
+    @Test
+    public void checkWithPlugboardAndDoubleNotches() {
+        String[] rotors = { "C", "Gamma", "VI", "VII", "VIII" };
+        checkKernels(navalMachine(rotors, "AAAA", PLUGBOARD).spec(),
+                     26 * 26 * 12 + 25 * 26, 1003);
+    }
+
+    @Test
+    public void checkDecode() {
+        MachineSpec spec = navalMachine(ROTORS, "AAAA", null).spec();
+        PositionKernel kernel = new PositionKernel(spec, new int[0]);
+        int[] positions = new int[5];
+        kernel.decode(((2 * 26 + 23) * 26 + 11) * 26 + 4, positions);
+        assertArrayEquals(new int[] { 0, 2, 23, 11, 4 }, positions);
+    }
+
+}
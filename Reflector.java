@@ -13,6 +13,16 @@ class Reflector extends FixedRotor {
         super(name, perm);
     }
 
+    /** A copy of ORIGINAL, as for Rotor.copy(). */
+    Reflector(Reflector original) {
+        super(original);
+    }
+
+    @Override
+    Reflector copy() {
+        return new Reflector(this);
+    }
+
     @Override
     void set(int posn) {
         if (posn != 0) {
@@ -28,4 +38,14 @@ class Reflector extends FixedRotor {
     int convertBackward(int e) {
         throw error("Reflector can only convert forward and never backwards.");
     }
+
+    @Override
+    int positions() {
+        return 1;
+    }
+
+    @Override
+    int[] backwardTable() {
+        throw error("Reflector can only convert forward and never backwards.");
+    }
 }
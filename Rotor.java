@@ -12,6 +12,22 @@ class Rotor {
         _name = name;
         _permutation = perm;
         _position = 0;
+        _tables = this;
+    }
+
+    /** A rotor at setting 0 with the name and permutation of ORIGINAL,
+     *  sharing its conversion tables. */
+    Rotor(Rotor original) {
+        _name = original._name;
+        _permutation = original._permutation;
+        _position = 0;
+        _tables = original._tables;
+    }
+
+    /** Return a new rotor like me at setting 0, which shares my
+     *  conversion tables but moves independently of me. */
+    Rotor copy() {
+        return new Rotor(this);
     }
 
     /** Return my name. */
@@ -49,9 +65,9 @@ class Rotor {
         return _position;
     }
 
-    /** Set setting() to POSN.  */
+    /** Set setting() to POSN modulo size().  */
     void set(int posn) {
-        _position = posn;
+        _position = _permutation.wrap(posn);
     }
 
     /** Set setting() to character CPOSN. */
@@ -62,23 +78,78 @@ class Rotor {
     /** Return the conversion of P (an integer in the range 0..size()-1)
      *  according to my permutation. */
     int convertForward(int p) {
-        int inputandsetting = _position + p;
-        int wrappedinput = _permutation.wrap(inputandsetting);
-        int permutedinput = _permutation.permute(wrappedinput);
-        int outputandsetting = permutedinput - _position;
-        int wrappedoutput = _permutation.wrap(outputandsetting);
-        return wrappedoutput;
+        return forwardTable()[_position * size() + p];
     }
 
     /** Return the conversion of E (an integer in the range 0..size()-1)
      *  according to the inverse of my permutation. */
     int convertBackward(int e) {
-        int inputandsetting = _position + e;
-        int wrappedinput = _permutation.wrap(inputandsetting);
-        int inverseinput = _permutation.invert(wrappedinput);
-        int outputandsetting = inverseinput - _position;
-        int wrappedoutput = _permutation.wrap(outputandsetting);
-        return wrappedoutput;
+        return backwardTable()[_position * size() + e];
+    }
+
+    /** Return the number of settings for which I precompute conversion
+     *  tables.  By default this is every setting of my alphabet. */
+    int positions() {
+        return size();
+    }
+
+    /** Return my forward conversion table, building it on first use.
+     *  Entry POSN * size() + P is the result of convertForward(P) when
+     *  I am at setting POSN. */
+    int[] forwardTable() {
+        if (_tables != this) {
+            return _tables.forwardTable();
+        }
+        if (_forwardTable == null) {
+            _forwardTable = buildTable(true);
+        }
+        return _forwardTable;
+    }
+
+    /** Return my backward conversion table, building it on first use.
+     *  Entry POSN * size() + E is the result of convertBackward(E) when
+     *  I am at setting POSN. */
+    int[] backwardTable() {
+        if (_tables != this) {
+            return _tables.backwardTable();
+        }
+        if (_backwardTable == null) {
+            _backwardTable = buildTable(false);
+        }
+        return _backwardTable;
+    }
+
+    /** Return the number of bytes currently held by my conversion
+     *  tables (0 until they are first used). */
+    long tableBytes() {
+        if (_tables != this) {
+            return _tables.tableBytes();
+        }
+        long bytes = 0;
+        if (_forwardTable != null) {
+            bytes += (long) _forwardTable.length * Integer.BYTES;
+        }
+        if (_backwardTable != null) {
+            bytes += (long) _backwardTable.length * Integer.BYTES;
+        }
+        return bytes;
+    }
+
+    /** Return a conversion table for each of my positions(), applying
+     *  my permutation if FORWARD and its inverse otherwise. */
+    private int[] buildTable(boolean forward) {
+        int n = size();
+        int[] table = new int[positions() * n];
+        for (int posn = 0; posn < positions(); posn++) {
+            int row = posn * n;
+            for (int p = 0; p < n; p++) {
+                int contact = _permutation.wrap(posn + p);
+                int result = forward ? _permutation.permute(contact)
+                        : _permutation.invert(contact);
+                table[row + p] = _permutation.wrap(result - posn);
+            }
+        }
+        return table;
     }
 
     /** Returns true iff I am positioned to allow the rotor to my left
@@ -87,6 +158,11 @@ class Rotor {
         return false;
     }
 
+    /** Returns true iff I would be atNotch() when at setting POSN. */
+    boolean hasNotchAt(int posn) {
+        return false;
+    }
+
     /** Advance me one position, if possible. By default, does nothing. */
     void advance() {
     }
@@ -105,4 +181,17 @@ class Rotor {
     /** The position of this rotor ie. the
      * setting of the rotor at given point in time, 0 by default. */
     private int _position;
+
+    /** The rotor whose conversion tables I use: myself, unless I am a
+     *  copy. */
+    private final Rotor _tables;
+
+    /** Precomputed results of convertForward, indexed by
+     *  setting * size() + input; null until first used.  Volatile so
+     *  that specs may be built from the same rotor on several threads. */
+    private volatile int[] _forwardTable;
+
+    /** Precomputed results of convertBackward, indexed by
+     *  setting * size() + input; null until first used. */
+    private volatile int[] _backwardTable;
 }
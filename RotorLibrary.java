@@ -0,0 +1,293 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** The contents of a configuration: an alphabet, the shape of the
+ *  machine and the rotors available to it.  A library is either parsed
+ *  from a configuration file or loaded from a compact binary snapshot of
+ *  one, which is memory-mapped and needs no parsing.
+ *  @author Areeb Khalfay
+ */
+class RotorLibrary {
+
+    /** A library of ROTORS over ALPHABET, for machines with NUMROTORS
+     *  slots and NUMPAWLS pawls. */
+    RotorLibrary(Alphabet alphabet, int numRotors, int numPawls,
+                 List<Rotor> rotors) {
+        _alphabet = alphabet;
+        _numRotors = numRotors;
+        _numPawls = numPawls;
+        _rotors = Collections.unmodifiableList(new ArrayList<>(rotors));
+    }
+
+    /** Return the library in the file named NAME, which may be either a
+     *  configuration file or a snapshot written by writeSnapshot. */
+    static RotorLibrary load(String name) {
+        FileChannel file;
+        try {
+            file = FileChannel.open(Paths.get(name), StandardOpenOption.READ);
+        } catch (IOException | RuntimeException excp) {
+            throw error("could not open %s", name);
+        }
+        try {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+            while (magic.hasRemaining() && file.read(magic) >= 0) {
+                continue;
+            }
+            if (!magic.hasRemaining() && magic.getInt(0) == MAGIC) {
+                RotorLibrary library = readSnapshot(
+                    file.map(FileChannel.MapMode.READ_ONLY, 0, file.size()));
+                file.close();
+                return library;
+            }
+            file.position(0);
+        } catch (IOException excp) {
+            throw error("could not read %s", name);
+        }
+        ChannelReader config =
+            new ChannelReader(file, ChannelReader.MAP_WINDOW);
+        try {
+            return new ConfigParser(config).parse();
+        } finally {
+            config.close();
+        }
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the number of rotor slots of my machines. */
+    int numRotors() {
+        return _numRotors;
+    }
+
+    /** Return the number of pawls of my machines. */
+    int numPawls() {
+        return _numPawls;
+    }
+
+    /** Return my rotors. */
+    List<Rotor> rotors() {
+        return _rotors;
+    }
+
+    /** Return a new machine built from copies of my rotors, which share
+     *  their conversion tables with mine but not their settings. */
+    Machine machine() {
+        ArrayList<Rotor> rotors = new ArrayList<>(_rotors.size());
+        for (Rotor rotor : _rotors) {
+            rotors.add(rotor.copy());
+        }
+        return new Machine(_alphabet, _numRotors, _numPawls, rotors);
+    }
+
+    /** Return the spec of a machine whose slots hold the rotors named
+     *  NAMES (the reflector first) and whose plugboard is PLUGBOARD, or
+     *  none if PLUGBOARD is null. */
+    MachineSpec spec(String[] names, Permutation plugboard) {
+        if (names.length != _numRotors) {
+            throw error("a machine needs %d rotors, not %d", _numRotors,
+                        names.length);
+        }
+        ArrayList<Rotor> slots = new ArrayList<>();
+        for (String name : names) {
+            Rotor found = null;
+            for (Rotor rotor : _rotors) {
+                if (rotor.name().equalsIgnoreCase(name)) {
+                    found = rotor;
+                }
+            }
+            if (found == null) {
+                throw error("no rotor named %s", name);
+            }
+            if (slots.contains(found)) {
+                throw error("rotor %s is used twice", name);
+            }
+            slots.add(found);
+        }
+        return new MachineSpec(_alphabet, _numPawls, slots, plugboard);
+    }
+
+    /** Write a snapshot of me to the file named NAME. */
+    void writeSnapshot(String name) {
+        int size = _alphabet.size();
+        int width = tableWidth(size);
+        boolean range = _alphabet instanceof CharacterRange;
+        int length = HEADER_SIZE + (range ? 2 * Character.BYTES
+                                    : Integer.BYTES * (1 + size));
+        ArrayList<byte[]> names = new ArrayList<>();
+        ArrayList<byte[]> notches = new ArrayList<>();
+        for (Rotor rotor : _rotors) {
+            byte[] rotorName = rotor.name().getBytes(StandardCharsets.UTF_8);
+            byte[] rotorNotches = (rotor instanceof MovingRotor
+                ? ((MovingRotor) rotor).notches() : "")
+                .getBytes(StandardCharsets.UTF_8);
+            names.add(rotorName);
+            notches.add(rotorNotches);
+            length += 1 + 2 * Short.BYTES + rotorName.length
+                + rotorNotches.length + size * width;
+        }
+        ByteBuffer out = ByteBuffer.allocate(length);
+        out.putInt(MAGIC).putShort(VERSION);
+        if (range) {
+            out.put(RANGE_ALPHABET).putChar(_alphabet.toChar(0))
+                .putChar(_alphabet.toChar(size - 1));
+        } else {
+            out.put(CODE_POINT_ALPHABET).putInt(size);
+            for (int i = 0; i < size; i++) {
+                out.putInt(_alphabet.toCodePoint(i));
+            }
+        }
+        out.putInt(_numRotors).putInt(_numPawls).putInt(_rotors.size());
+        for (int r = 0; r < _rotors.size(); r++) {
+            Rotor rotor = _rotors.get(r);
+            out.put(rotor.reflecting() ? (byte) 'R'
+                    : rotor.rotates() ? (byte) 'M' : (byte) 'N');
+            out.putShort((short) names.get(r).length).put(names.get(r));
+            out.putShort((short) notches.get(r).length).put(notches.get(r));
+            Permutation perm = rotor.permutation();
+            for (int i = 0; i < size; i++) {
+                putIndex(out, width, perm.permute(i));
+            }
+        }
+        out.flip();
+        try (FileChannel file = FileChannel.open(Paths.get(name),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) {
+                file.write(out);
+            }
+        } catch (IOException | RuntimeException excp) {
+            throw error("could not write %s", name);
+        }
+    }
+
+    /** Return the library held by the snapshot IN. */
+    static RotorLibrary readSnapshot(ByteBuffer in) {
+        try {
+            if (in.getInt() != MAGIC || in.getShort() != VERSION) {
+                throw error("unsupported configuration snapshot");
+            }
+            Alphabet alphabet;
+            byte alphabetKind = in.get();
+            if (alphabetKind == RANGE_ALPHABET) {
+                alphabet = new CharacterRange(in.getChar(), in.getChar());
+            } else if (alphabetKind == CODE_POINT_ALPHABET) {
+                int[] symbols = new int[in.getInt()];
+                for (int i = 0; i < symbols.length; i++) {
+                    symbols[i] = in.getInt();
+                }
+                alphabet = new CodePointAlphabet(symbols);
+            } else {
+                throw error("unsupported configuration snapshot");
+            }
+            int numRotors = in.getInt();
+            int numPawls = in.getInt();
+            int count = in.getInt();
+            int size = alphabet.size();
+            int width = tableWidth(size);
+            ArrayList<Rotor> rotors = new ArrayList<>(count);
+            for (int r = 0; r < count; r++) {
+                byte kind = in.get();
+                String name = getString(in);
+                String notches = getString(in);
+                int[] forward = new int[size];
+                for (int i = 0; i < size; i++) {
+                    forward[i] = getIndex(in, width);
+                }
+                Permutation perm = new Permutation(forward, alphabet);
+                if (kind == 'M') {
+                    rotors.add(new MovingRotor(name, perm, "M" + notches));
+                } else if (kind == 'N') {
+                    rotors.add(new FixedRotor(name, perm));
+                } else if (kind == 'R') {
+                    rotors.add(new Reflector(name, perm));
+                } else {
+                    throw error("corrupt configuration snapshot");
+                }
+            }
+            return new RotorLibrary(alphabet, numRotors, numPawls, rotors);
+        } catch (BufferUnderflowException excp) {
+            throw error("truncated configuration snapshot");
+        }
+    }
+
+    /** Return the number of bytes used to store an index into an
+     *  alphabet of SIZE characters. */
+    private static int tableWidth(int size) {
+        if (size <= 1 << Byte.SIZE) {
+            return 1;
+        }
+        return size <= 1 << Character.SIZE ? Character.BYTES : Integer.BYTES;
+    }
+
+    /** Put INDEX into OUT as a WIDTH-byte unsigned number. */
+    private static void putIndex(ByteBuffer out, int width, int index) {
+        if (width == 1) {
+            out.put((byte) index);
+        } else if (width == Character.BYTES) {
+            out.putChar((char) index);
+        } else {
+            out.putInt(index);
+        }
+    }
+
+    /** Return the next WIDTH-byte unsigned number from IN. */
+    private static int getIndex(ByteBuffer in, int width) {
+        if (width == 1) {
+            return in.get() & 0xff;
+        } else if (width == Character.BYTES) {
+            return in.getChar();
+        }
+        return in.getInt();
+    }
+
+    /** Return the next length-prefixed UTF-8 string from IN. */
+    private static String getString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort() & 0xffff];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** First four bytes of a snapshot: "ENGM". */
+    static final int MAGIC = 0x454e474d;
+
+    /** Version of the snapshot format. */
+    private static final short VERSION = 1;
+
+    /** Snapshot code of a CharacterRange alphabet. */
+    private static final byte RANGE_ALPHABET = 0;
+
+    /** Snapshot code of an alphabet listed by code point. */
+    private static final byte CODE_POINT_ALPHABET = 1;
+
+    /** Bytes of a snapshot before its first rotor, less its alphabet. */
+    private static final int HEADER_SIZE = Integer.BYTES + Short.BYTES + 1
+        + 3 * Integer.BYTES;
+
+    /** My alphabet. */
+    private final Alphabet _alphabet;
+
+    /** Number of rotor slots of my machines. */
+    private final int _numRotors;
+
+    /** Number of pawls of my machines. */
+    private final int _numPawls;
+
+    /** My rotors. */
+    private final List<Rotor> _rotors;
+
+}
@@ -0,0 +1,275 @@
+package enigma;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+
+import static enigma.EnigmaException.*;
+
+/** A long-running server that converts messages with a machine whose
+ *  configuration was read once, so that each request costs only its own
+ *  settings line and message.
+ *
+ *  Requests and responses are frames: a four-byte big-endian length
+ *  followed by that many bytes of UTF-8 text.  A request holds input in
+ *  the format read by Main (a settings line followed by message lines,
+ *  possibly repeated); its response holds the output Main would write,
+ *  or "Error: " and a message if the request was not valid.  A client may
+ *  send any number of requests on one connection.
+ *  @author Areeb Khalfay
+ */
+class Server {
+
+    /** A server converting requests with MACHINE, which was returned by
+     *  MAIN.readConfig(). */
+    Server(Main main, Machine machine) {
+        _main = main;
+        _machine = machine;
+    }
+
+    /** Serve connections at ADDRESS (a port number on the loopback
+     *  interface, or the path of a Unix-domain socket) until the process
+     *  is killed. */
+    void serve(String address) {
+        try {
+            serve(bind(address));
+        } catch (IOException excp) {
+            throw error("could not listen on %s: %s", address,
+                        excp.getMessage());
+        }
+    }
+
+    /** Serve connections accepted by SERVER until it is closed. */
+    void serve(ServerSocketChannel server) {
+        try (server) {
+            while (true) {
+                SocketChannel client = server.accept();
+                Thread handler = new Thread(() -> handle(client),
+                                            "enigma-client");
+                handler.setDaemon(true);
+                handler.start();
+            }
+        } catch (IOException excp) {
+            if (server.isOpen()) {
+                throw error("server failed: %s", excp.getMessage());
+            }
+        }
+    }
+
+    /** Return a server socket bound to ADDRESS.  A stale socket left at
+     *  the path ADDRESS, which no server is listening on, is replaced,
+     *  but any other file there, including a socket still in use, is
+     *  kept and the server refuses to start. */
+    static ServerSocketChannel bind(String address) throws IOException {
+        ServerSocketChannel server;
+        SocketAddress local;
+        if (address.matches("[0-9]+")) {
+            server = ServerSocketChannel.open(StandardProtocolFamily.INET);
+            local = new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                          Integer.parseInt(address));
+        } else {
+            Path path = Path.of(address);
+            if (Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+                if (!isSocket(path)) {
+                    throw error("%s exists and is not a socket", address);
+                }
+                if (isListening(path)) {
+                    throw error("%s is in use by another server", address);
+                }
+                Files.delete(path);
+            }
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            local = UnixDomainSocketAddress.of(path);
+        }
+        server.bind(local);
+        return server;
+    }
+
+    /** Return true iff PATH is a Unix-domain socket (and not, say, a
+     *  FIFO or device).  Returns false where file modes are not
+     *  available. */
+    private static boolean isSocket(Path path) throws IOException {
+        try {
+            int mode = (Integer) Files.getAttribute(path, "unix:mode",
+                                                    LinkOption.NOFOLLOW_LINKS);
+            return (mode & S_IFMT) == S_IFSOCK;
+        } catch (UnsupportedOperationException
+                 | IllegalArgumentException excp) {
+            return false;
+        }
+    }
+
+    /** Return true iff a server accepts connections on the socket PATH. */
+    private static boolean isListening(Path path) throws IOException {
+        try (SocketChannel probe =
+                 SocketChannel.open(UnixDomainSocketAddress.of(path))) {
+            return true;
+        } catch (ConnectException excp) {
+            return false;
+        }
+    }
+
+    /** Answer the requests arriving on CLIENT until it closes. */
+    void handle(SocketChannel client) {
+        try (client) {
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+            while (readFully(client, header)) {
+                int length = header.flip().getInt();
+                header.clear();
+                if (length < 0 || length > MAX_FRAME) {
+                    writeFrame(client, errorText("frame too large"));
+                    return;
+                }
+                ByteBuffer request = ByteBuffer.allocate(length);
+                if (length > 0 && !readFully(client, request)) {
+                    return;
+                }
+                writeFrame(client, respond(request.array()));
+            }
+        } catch (IOException excp) {
+            return;
+        }
+    }
+
+    /** Return the response to the request REQUEST. */
+    byte[] respond(byte[] request) {
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        GroupWriter output = new GroupWriter(Channels.newChannel(response));
+        ChannelReader input = new ChannelReader(
+            Channels.newChannel(new ByteArrayInputStream(request)));
+        try {
+            convert(input, output);
+            output.flush();
+        } catch (EnigmaException excp) {
+            return errorText(excp.getMessage());
+        }
+        return response.toByteArray();
+    }
+
+    /** Apply the settings lines of INPUT to the message lines that follow
+     *  them, as Main.convert does, writing the results to OUTPUT.  Each
+     *  settings line gets its own rotor positions, converted with the
+     *  spec shared by my machine, so concurrent requests only wait for
+     *  one another while a settings line is read. */
+    private void convert(ChannelReader input, GroupWriter output) {
+        MachineSpec spec = null;
+        MachineState state = null;
+        for (String line = readLine(input); line != null;
+             line = readLine(input)) {
+            int start = 0;
+            while (start < line.length()
+                   && (line.charAt(start) == ' '
+                       || line.charAt(start) == '\t')) {
+                start += 1;
+            }
+            if (line.startsWith("*", start)) {
+                synchronized (_machine) {
+                    _main.setUp(_machine, line.substring(start));
+                    spec = _machine.spec();
+                    state = _machine.state();
+                }
+            } else if (spec == null) {
+                if (start < line.length()) {
+                    throw error("input does not start with a settings line");
+                }
+            } else {
+                StringBuilder msg = new StringBuilder(line.length());
+                line.substring(start).codePoints().forEach(ch ->
+                    msg.appendCodePoint(Character.isWhitespace(ch) ? ' '
+                                        : Character.toUpperCase(ch)));
+                char[] converted =
+                    spec.convert(state, msg.toString()).toCharArray();
+                output.write(converted, converted.length);
+                output.endLine();
+            }
+        }
+    }
+
+    /** Return the next line of INPUT without its line terminator, or
+     *  null if INPUT has ended. */
+    private static String readLine(ChannelReader input) {
+        int ch = input.readCodePoint();
+        if (ch < 0) {
+            return null;
+        }
+        StringBuilder line = new StringBuilder();
+        while (ch >= 0 && ch != '\n') {
+            if (ch != '\r') {
+                line.appendCodePoint(ch);
+            }
+            ch = input.readCodePoint();
+        }
+        return line.toString();
+    }
+
+    /** Return the response reporting the error MSG. */
+    private static byte[] errorText(String msg) {
+        return String.format("Error: %s%n", msg)
+            .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Fill BUFFER from CHANNEL.  Returns false if CHANNEL ends first. */
+    private static boolean readFully(SocketChannel channel, ByteBuffer buffer)
+        throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Write PAYLOAD to CHANNEL as one frame. */
+    static void writeFrame(SocketChannel channel, byte[] payload)
+        throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + payload.length);
+        frame.putInt(payload.length).put(payload).flip();
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    /** Return the payload of the next frame on CHANNEL, or null if it
+     *  ends first. */
+    static byte[] readFrame(SocketChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+        if (!readFully(channel, header)) {
+            return null;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(header.flip().getInt());
+        if (!readFully(channel, payload)) {
+            return null;
+        }
+        return payload.array();
+    }
+
+    /** Mask of the file type bits of a Unix file mode. */
+    private static final int S_IFMT = 0170000;
+
+    /** File type bits of a Unix-domain socket. */
+    private static final int S_IFSOCK = 0140000;
+
+    /** Largest request accepted, in bytes. */
+    static final int MAX_FRAME = 1 << 24;
+
+    /** Reads the configuration and settings lines of requests. */
+    private final Main _main;
+
+    /** The machine on which all requests read their settings lines. */
+    private final Machine _machine;
+
+}
@@ -0,0 +1,155 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** The suite of all JUnit tests for the Server class.
+ *  @author Areeb Khalfay
+ */
+public class ServerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** A request converting the start of the standard test message. */
+    private static final String REQUEST =
+        "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)\n"
+        + "FROM his shoulder Hiawatha\n";
+
+    /** The response to REQUEST. */
+    private static final String RESPONSE = "QVPQS OKOIL PUBKJ ZPISF XDW\n";
+
+    /** Return a server for the configuration MainTest.CONFIG. */
+    private Server server() throws IOException {
+        Path config = Files.createTempFile("enigma", ".conf");
+        Files.write(config, MainTest.CONFIG.getBytes(StandardCharsets.UTF_8));
+        Main main = new Main(config.toString());
+        return new Server(main, main.readConfig());
+    }
+
+    /** Return the UTF-8 text of BYTES. */
+    private static String text(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void checkRespond() throws IOException {
+        Server server = server();
+        byte[] request = REQUEST.getBytes(StandardCharsets.UTF_8);
+        assertEquals(RESPONSE, text(server.respond(request)));
+        assertEquals(RESPONSE, text(server.respond(request)));
+        assertTrue(text(server.respond("HELLO\n".getBytes()))
+                   .startsWith("Error: "));
+    }
+
+    @Test
+    public void checkMalformedSettings() throws IOException {
+        Server server = server();
+        String[] bad = {
+            "* B Beta\nHELLO\n", "* B BETA III IV XX AXLE\nHELLO\n",
+            "* B BETA I II III AX\nHELLO\n",
+        };
+        for (String request : bad) {
+            assertTrue(request, text(server.respond(
+                request.getBytes(StandardCharsets.UTF_8)))
+                       .startsWith("Error: "));
+        }
+        byte[] request = REQUEST.getBytes(StandardCharsets.UTF_8);
+        assertEquals(RESPONSE, text(server.respond(request)));
+    }
+
+    @Test
+    public void checkBindKeepsFiles() throws IOException {
+        Path file = Files.createTempFile("enigma", ".txt");
+        Files.write(file, "notes".getBytes(StandardCharsets.UTF_8));
+        try {
+            Server.bind(file.toString()).close();
+            fail("bound over a regular file");
+        } catch (EnigmaException excp) {
+            assertEquals("notes", text(Files.readAllBytes(file)));
+        }
+        String socket = Files.createTempDirectory("enigma")
+            .resolve("stale.sock").toString();
+        Server.bind(socket).close();
+        Server.bind(socket).close();
+    }
+
+    @Test
+    public void checkBindKeepsLiveSocket() throws IOException {
+        String socket = Files.createTempDirectory("enigma")
+            .resolve("live.sock").toString();
+        try (ServerSocketChannel live = Server.bind(socket)) {
+            try {
+                Server.bind(socket).close();
+                fail("bound over a socket in use");
+            } catch (EnigmaException excp) {
+                SocketChannel.open(UnixDomainSocketAddress.of(socket))
+                    .close();
+            }
+        }
+    }
+
+    @Test
+    public void checkConcurrentRequests() throws Exception {
+        Server server = server();
+        byte[] other = ("* B Beta III IV I AAAA\nAAAAA\n")
+            .getBytes(StandardCharsets.UTF_8);
+        String expected = text(server.respond(other));
+        Thread[] threads = new Thread[4];
+        String[] results = new String[threads.length];
+        for (int t = 0; t < threads.length; t += 1) {
+            int k = t;
+            threads[t] = new Thread(() -> {
+                byte[] request = k % 2 == 0 ? other
+                    : REQUEST.getBytes(StandardCharsets.UTF_8);
+                String result = null;
+                for (int i = 0; i < 200; i += 1) {
+                    String response = text(server.respond(request));
+                    if (result != null && !result.equals(response)) {
+                        response = "mismatch";
+                    }
+                    result = response;
+                }
+                results[k] = result;
+            });
+            threads[t].start();
+        }
+        for (int t = 0; t < threads.length; t += 1) {
+            threads[t].join();
+            assertEquals(t % 2 == 0 ? expected : RESPONSE, results[t]);
+        }
+    }
+
+    @Test
+    public void checkUnixSocket() throws Exception {
+        Server server = server();
+        Path dir = Files.createTempDirectory("enigma");
+        String address = dir.resolve("enigma.sock").toString();
+        ServerSocketChannel listener = Server.bind(address);
+        Thread serving = new Thread(() -> server.serve(listener));
+        serving.start();
+        try (SocketChannel client =
+                 SocketChannel.open(UnixDomainSocketAddress.of(address))) {
+            for (int i = 0; i < 3; i += 1) {
+                Server.writeFrame(client,
+                                  REQUEST.getBytes(StandardCharsets.UTF_8));
+                assertEquals(RESPONSE, text(Server.readFrame(client)));
+            }
+        } finally {
+            listener.close();
+            serving.join();
+        }
+    }
+
+}
@@ -0,0 +1,351 @@
+package enigma;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static enigma.EnigmaException.*;
+
+/** An engine running many independent conversations at once.  Each
+ *  session is opened with a settings line, as read by Main.setUp, and
+ *  then converts the messages submitted to it in order, with its own
+ *  rotor positions; the rotor tables themselves are shared by every
+ *  session.
+ *
+ *  A session holds no thread while it has nothing to do.  Submitting a
+ *  message to an idle session schedules it on the engine's executor,
+ *  which uses virtual threads when the JDK has them and a work-stealing
+ *  pool otherwise, so an engine can hold tens of thousands of open
+ *  sessions.  Each session's queue of unconverted messages is bounded,
+ *  and so is the number of unconverted messages in the whole engine;
+ *  submit() waits for room, and offer() fails instead.
+ *  @author Areeb Khalfay
+ */
+class SessionEngine implements AutoCloseable {
+
+    /** An engine whose sessions are set up by MAIN from MACHINE, which
+     *  was returned by MAIN.readConfig(), with at most SESSIONQUEUE
+     *  unconverted messages per session and at most ENGINEQUEUE in all. */
+    SessionEngine(Main main, Machine machine, int sessionQueue,
+                  int engineQueue) {
+        if (sessionQueue <= 0 || engineQueue <= 0) {
+            throw error("queue capacities must be positive");
+        }
+        _main = main;
+        _machine = machine;
+        _sessionQueue = sessionQueue;
+        _pending = new Semaphore(engineQueue);
+        _executor = newExecutor();
+        _started = System.nanoTime();
+    }
+
+    /** An engine whose sessions are set up by MAIN from MACHINE, with the
+     *  default queue capacities. */
+    SessionEngine(Main main, Machine machine) {
+        this(main, machine, DEFAULT_SESSION_QUEUE, DEFAULT_ENGINE_QUEUE);
+    }
+
+    /** Return a new session set up according to SETTINGS. */
+    Session open(String settings) {
+        if (_closed) {
+            throw error("session engine is closed");
+        }
+        MachineSpec spec;
+        MachineState state;
+        synchronized (_machine) {
+            _main.setUp(_machine, settings);
+            spec = _machine.spec();
+            state = _machine.state();
+        }
+        _open.increment();
+        return new Session(spec, state);
+    }
+
+    /** Return the number of sessions open now. */
+    long openSessions() {
+        return _open.sum();
+    }
+
+    /** Return the number of messages converted by all sessions. */
+    long messages() {
+        return _messages.sum();
+    }
+
+    /** Return the number of letters converted by all sessions. */
+    long letters() {
+        return _letters.sum();
+    }
+
+    /** Return the letters converted per second by all sessions since I
+     *  was created. */
+    double lettersPerSecond() {
+        return rate(_letters.sum(), _started);
+    }
+
+    /** Stop accepting sessions, and wait for the messages already
+     *  submitted to be converted. */
+    @Override
+    public void close() {
+        _closed = true;
+        _executor.shutdown();
+        try {
+            while (!_executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                continue;
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** A conversation with its own rotor positions. */
+    class Session implements AutoCloseable {
+
+        /** A session converting with SPEC from STATE. */
+        private Session(MachineSpec spec, MachineState state) {
+            _spec = spec;
+            _state = state;
+            _trial = state.copy();
+            _inbox = new ArrayBlockingQueue<>(_sessionQueue);
+            _opened = System.nanoTime();
+        }
+
+        /** Return the conversion of MSG, once every message submitted
+         *  before it has been converted, waiting for room in the
+         *  queues first if they are full. */
+        CompletableFuture<String> submit(String msg) {
+            checkOpen();
+            checkMessage(msg);
+            Request request = new Request(msg);
+            boolean acquired = false;
+            try {
+                _pending.acquire();
+                acquired = true;
+                _inbox.put(request);
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+                if (acquired) {
+                    _pending.release();
+                }
+                request.result.completeExceptionally(excp);
+                return request.result;
+            }
+            schedule();
+            return request.result;
+        }
+
+        /** Return the conversion of MSG, as for submit(MSG), or null if
+         *  the queues are full. */
+        CompletableFuture<String> offer(String msg) {
+            checkOpen();
+            checkMessage(msg);
+            if (!_pending.tryAcquire()) {
+                return null;
+            }
+            Request request = new Request(msg);
+            if (!_inbox.offer(request)) {
+                _pending.release();
+                return null;
+            }
+            schedule();
+            return request.result;
+        }
+
+        /** Return the number of messages I have converted. */
+        long messages() {
+            return _sessionMessages;
+        }
+
+        /** Return the number of letters I have converted. */
+        long letters() {
+            return _sessionLetters;
+        }
+
+        /** Return the letters I have converted per second since I was
+         *  opened. */
+        double lettersPerSecond() {
+            return rate(_sessionLetters, _opened);
+        }
+
+        /** Stop accepting messages.  Those already submitted are still
+         *  converted. */
+        @Override
+        public synchronized void close() {
+            if (!_sessionClosed) {
+                _sessionClosed = true;
+                _open.decrement();
+            }
+        }
+
+        /** Check that neither I nor my engine has been closed. */
+        private void checkOpen() {
+            if (_sessionClosed || _closed) {
+                throw error("session is closed");
+            }
+        }
+
+        /** Check that MSG is a message. */
+        private void checkMessage(String msg) {
+            if (msg == null) {
+                throw error("null message");
+            }
+        }
+
+        /** Run drain() on the executor unless it is already pending. */
+        private void schedule() {
+            if (_scheduled.compareAndSet(false, true)) {
+                _executor.execute(this::drain);
+            }
+        }
+
+        /** Convert the messages in my inbox in order until it is empty. */
+        private void drain() {
+            try {
+                Request request;
+                while ((request = _inbox.poll()) != null) {
+                    _pending.release();
+                    try {
+                        request.result.complete(convert(request.msg));
+                    } catch (RuntimeException excp) {
+                        request.result.completeExceptionally(excp);
+                    }
+                }
+            } finally {
+                _scheduled.set(false);
+                if (!_inbox.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+
+        /** Return the conversion of MSG, which is treated as a message
+         *  line of Main's input.  My rotors move only if all of MSG
+         *  converts. */
+        private String convert(String msg) {
+            char[] text = new char[msg.length()];
+            long letters = 0;
+            for (int i = 0; i < text.length; i += 1) {
+                char ch = msg.charAt(i);
+                if (Character.isWhitespace(ch)) {
+                    text[i] = ' ';
+                } else {
+                    text[i] = Character.toUpperCase(ch);
+                    letters += 1;
+                }
+            }
+            _trial.copyFrom(_state);
+            _spec.convert(_trial, text, 0, text.length, text);
+            _state.copyFrom(_trial);
+            _sessionMessages += 1;
+            _sessionLetters += letters;
+            _messages.increment();
+            _letters.add(letters);
+            return new String(text);
+        }
+
+        /** Shared description of my machine. */
+        private final MachineSpec _spec;
+
+        /** My rotor positions. */
+        private final MachineState _state;
+
+        /** Scratch rotor positions for the message being converted. */
+        private final MachineState _trial;
+
+        /** Messages submitted but not yet converted. */
+        private final ArrayBlockingQueue<Request> _inbox;
+
+        /** True while drain() is scheduled or running. */
+        private final AtomicBoolean _scheduled = new AtomicBoolean();
+
+        /** Value of System.nanoTime() when I was opened. */
+        private final long _opened;
+
+        /** True once I have been closed. */
+        private volatile boolean _sessionClosed;
+
+        /** Number of messages I have converted.  Only written by
+         *  drain(), which never runs twice at once. */
+        private volatile long _sessionMessages;
+
+        /** Number of letters I have converted, written like
+         *  _sessionMessages. */
+        private volatile long _sessionLetters;
+    }
+
+    /** A message waiting to be converted, and its eventual result. */
+    private static class Request {
+
+        /** A request to convert MSG. */
+        Request(String msg) {
+            this.msg = msg;
+        }
+
+        /** The message. */
+        final String msg;
+
+        /** Its conversion. */
+        final CompletableFuture<String> result = new CompletableFuture<>();
+    }
+
+    /** Return the rate of COUNT events since the System.nanoTime() value
+     *  START, per second. */
+    private static double rate(long count, long start) {
+        long elapsed = Math.max(1, System.nanoTime() - start);
+        return count * 1e9 / elapsed;
+    }
+
+    /** Return an executor starting a virtual thread for each task if this
+     *  JDK has them, and a work-stealing pool otherwise. */
+    private static ExecutorService newExecutor() {
+        try {
+            Method factory =
+                Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException excp) {
+            return Executors.newWorkStealingPool();
+        }
+    }
+
+    /** Default bound on the unconverted messages of one session. */
+    static final int DEFAULT_SESSION_QUEUE = 64;
+
+    /** Default bound on the unconverted messages of a whole engine. */
+    static final int DEFAULT_ENGINE_QUEUE = 1 << 16;
+
+    /** Reads settings lines. */
+    private final Main _main;
+
+    /** Machine on which settings lines are read. */
+    private final Machine _machine;
+
+    /** Bound on the unconverted messages of each session. */
+    private final int _sessionQueue;
+
+    /** Permits for the unconverted messages of the whole engine. */
+    private final Semaphore _pending;
+
+    /** Runs the sessions that have messages to convert. */
+    private final ExecutorService _executor;
+
+    /** Value of System.nanoTime() when I was created. */
+    private final long _started;
+
+    /** True once I have been closed. */
+    private volatile boolean _closed;
+
+    /** Number of open sessions. */
+    private final LongAdder _open = new LongAdder();
+
+    /** Number of messages converted by all sessions. */
+    private final LongAdder _messages = new LongAdder();
+
+    /** Number of letters converted by all sessions. */
+    private final LongAdder _letters = new LongAdder();
+
+}
@@ -0,0 +1,148 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static enigma.MachineTest.*;
+
+/** The suite of all JUnit tests for the SessionEngine class.
+ *  @author Areeb Khalfay
+ */
+public class SessionEngineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /** The settings line of the standard test message. */
+    private static final String SETTINGS =
+        "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)";
+
+    /** Return an engine for the configuration MainTest.CONFIG, with
+     *  queue capacities SESSIONQUEUE and ENGINEQUEUE. */
+    private SessionEngine engine(int sessionQueue, int engineQueue)
+        throws IOException {
+        Path config = Files.createTempFile("enigma", ".conf");
+        Files.write(config, MainTest.CONFIG.getBytes(StandardCharsets.UTF_8));
+        Main main = new Main(config.toString());
+        return new SessionEngine(main, main.readConfig(), sessionQueue,
+                                 engineQueue);
+    }
+
+    @Test
+    public void checkKnownMessage() throws Exception {
+        try (SessionEngine engine = engine(4, 16)) {
+            SessionEngine.Session session = engine.open(SETTINGS);
+            CompletableFuture<String> first =
+                session.submit("FROM his shoulder Hiawatha");
+            CompletableFuture<String> second =
+                session.submit("Took the camera of rosewood");
+            Machine mach = navalMachine(ROTORS, "AXLE", PLUGBOARD);
+            mach.convert("FROM HIS SHOULDER HIAWATHA");
+            assertEquals("QVPQ SOK OILPUBKJ ZPISFXDW", first.get());
+            assertEquals(mach.convert("TOOK THE CAMERA OF ROSEWOOD"),
+                         second.get());
+            assertEquals(2, session.messages());
+            assertEquals(46, session.letters());
+            assertEquals(46, engine.letters());
+            assertEquals(1, engine.openSessions());
+            session.close();
+            assertEquals(0, engine.openSessions());
+        }
+    }
+
+    @Test
+    public void checkManySessions() throws Exception {
+        String msg = randomMessage(40, 7);
+        String[] settings = { "AAAA", "AXLE", "ZZZZ", "QEVJ" };
+        String[] expected = new String[settings.length];
+        for (int k = 0; k < settings.length; k += 1) {
+            expected[k] = navalMachine(ROTORS, settings[k], PLUGBOARD)
+                .convert(msg);
+        }
+        try (SessionEngine engine = engine(4, 1 << 10)) {
+            List<SessionEngine.Session> sessions = new ArrayList<>();
+            List<CompletableFuture<String>> results = new ArrayList<>();
+            for (int i = 0; i < 20000; i += 1) {
+                SessionEngine.Session session = engine.open(
+                    "* B Beta III IV I " + settings[i % settings.length]
+                    + " (HQ) (EX) (IP) (TR) (BY)");
+                sessions.add(session);
+                results.add(session.submit(msg));
+            }
+            assertEquals(20000, engine.openSessions());
+            for (int i = 0; i < results.size(); i += 1) {
+                assertEquals(expected[i % settings.length],
+                             results.get(i).get());
+            }
+            assertEquals(20000, engine.messages());
+        }
+    }
+
+    @Test
+    public void checkBackpressure() throws Exception {
+        try (SessionEngine engine = engine(2, 1)) {
+            SessionEngine.Session session = engine.open(SETTINGS);
+            List<CompletableFuture<String>> accepted = new ArrayList<>();
+            String msg = randomMessage(20000, 3);
+            int refused = 0;
+            for (int i = 0; i < 1000; i += 1) {
+                CompletableFuture<String> result = session.offer(msg);
+                if (result == null) {
+                    refused += 1;
+                } else {
+                    accepted.add(result);
+                }
+            }
+            for (CompletableFuture<String> result : accepted) {
+                result.get();
+            }
+            assertTrue(refused > 0);
+            assertEquals(accepted.size(), session.messages());
+        }
+    }
+
+    @Test
+    public void checkBadMessages() throws Exception {
+        try (SessionEngine engine = engine(4, 16)) {
+            SessionEngine.Session session = engine.open(SETTINGS);
+            try {
+                session.submit(null);
+                fail("accepted a null message");
+            } catch (EnigmaException excp) {
+                /* Expected. */
+            }
+            CompletableFuture<String> bad = session.submit("HELLO 1");
+            CompletableFuture<String> good =
+                session.submit("FROM his shoulder Hiawatha");
+            try {
+                bad.get();
+                fail("converted a message outside the alphabet");
+            } catch (ExecutionException excp) {
+                assertTrue(excp.getCause() instanceof EnigmaException);
+            }
+            assertEquals("QVPQ SOK OILPUBKJ ZPISFXDW", good.get());
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkClosedSession() throws Exception {
+        try (SessionEngine engine = engine(2, 2)) {
+            SessionEngine.Session session = engine.open(SETTINGS);
+            session.close();
+            session.submit("HELLO");
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+package enigma;
+
+import java.util.HashSet;
+import java.util.Scanner;
+
+import static enigma.EnigmaException.*;
+
+/** A settings line compiled once, as read by Main.setUp: the rotors to
+ *  insert, their initial setting and the plugboard.  Settings never
+ *  change, so one may be applied to a machine any number of times with
+ *  Machine.setUp(Settings) without reading the line again.
+ *  @author Areeb Khalfay
+ */
+final class Settings {
+
+    /** Settings inserting ROTORS (upper-case names, reflector first),
+     *  set to SETTING, with plugboard PLUGBOARD (null for none). */
+    Settings(String[] rotors, String setting, Permutation plugboard) {
+        _rotors = rotors.clone();
+        _setting = setting;
+        _plugboard = plugboard;
+    }
+
+    /** Return the settings given by the settings line LINE for MACHINE,
+     *  in the format read by Main.setUp, checking that MACHINE has each
+     *  rotor named. */
+    static Settings parse(String line, Machine machine) {
+        Settings key = parse(line, machine.numRotors(), machine.alphabet());
+        for (String name : key._rotors) {
+            if (!machine.hasRotor(name)) {
+                throw error("unknown rotor %s", name);
+            }
+        }
+        return key;
+    }
+
+    /** Return the settings given by the settings line LINE for a machine
+     *  with NUMROTORS slots over ALPHABET, in the format read by
+     *  Main.setUp. */
+    static Settings parse(String line, int numRotors, Alphabet alphabet) {
+        Scanner settingsScanner = new Scanner(line);
+        if (settingsScanner.hasNext("\\*")) {
+            settingsScanner.next();
+        }
+        String[] rotors = new String[numRotors];
+        HashSet<String> names = new HashSet<>();
+        for (int i = 0; i < numRotors; i++) {
+            if (!settingsScanner.hasNext()) {
+                throw error("settings line names %d rotors, not %d", i,
+                            numRotors);
+            }
+            rotors[i] = settingsScanner.next().toUpperCase();
+            if (!names.add(rotors[i])) {
+                throw error("rotor %s is named twice", rotors[i]);
+            }
+        }
+        if (!settingsScanner.hasNext()) {
+            throw error("settings line has no setting");
+        }
+        String setting = settingsScanner.next();
+        int[] symbols = setting.codePoints().toArray();
+        if (symbols.length != numRotors - 1) {
+            throw error("setting %s should have %d characters", setting,
+                        numRotors - 1);
+        }
+        for (int symbol : symbols) {
+            if (!alphabet.containsCodePoint(symbol)) {
+                throw error("setting character %c is not in the alphabet",
+                            symbol);
+            }
+        }
+        StringBuilder cycles = new StringBuilder();
+        while (settingsScanner.hasNext(PLUGBOARD_CYCLE)) {
+            cycles.append(settingsScanner.next()).append(' ');
+        }
+        if (settingsScanner.hasNext()) {
+            throw error("unexpected %s in settings line",
+                        settingsScanner.next());
+        }
+        Permutation plugboard = cycles.length() == 0 ? null
+            : new Permutation(cycles.toString(), alphabet);
+        return new Settings(rotors, setting, plugboard);
+    }
+
+    /** Return the names of the rotors, reflector first.  The result must
+     *  not be changed. */
+    String[] rotors() {
+        return _rotors;
+    }
+
+    /** Return the initial setting of the rotors after the reflector, as
+     *  passed to Machine.setRotors. */
+    String setting() {
+        return _setting;
+    }
+
+    /** Return the plugboard, or null if there is none. */
+    Permutation plugboard() {
+        return _plugboard;
+    }
+
+    @Override
+    public String toString() {
+        return String.join(" ", _rotors) + " " + _setting;
+    }
+
+    /** Pattern of a cycle of the plugboard, whose symbols may be any
+     *  characters of the alphabet. */
+    private static final String PLUGBOARD_CYCLE = "[(][^()\\s]+[)]";
+
+    /** Upper-case names of the rotors, reflector first. */
+    private final String[] _rotors;
+
+    /** Initial setting of the rotors after the reflector. */
+    private final String _setting;
+
+    /** The plugboard, or null. */
+    private final Permutation _plugboard;
+
+}
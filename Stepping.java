@@ -0,0 +1,223 @@
+package enigma;
+
+import java.util.Arrays;
+import java.util.List;
+
+/** The stepping behaviour of a set of inserted rotors, modelled on a plain
+ *  array of rotor positions instead of on the Rotor objects themselves.
+ *  Position I of such an array is the setting of rotor slot I (slot 0
+ *  being the reflector).
+ *  @author Areeb Khalfay
+ */
+class Stepping {
+
+    /** A stepping model for the rotors ROTORS (in slot order, reflector
+     *  first) of a machine with NUMPAWLS pawls. */
+    Stepping(List<Rotor> rotors, int numPawls) {
+        _numRotors = rotors.size();
+        _numPawls = numPawls;
+        _size = rotors.get(0).size();
+        _rotates = new boolean[_numRotors];
+        _notches = new boolean[_numRotors][];
+        for (int i = 0; i < _numRotors; i++) {
+            Rotor rotor = rotors.get(i);
+            _rotates[i] = rotor.rotates();
+            _notches[i] = new boolean[_size];
+            for (int posn = 0; posn < _size; posn++) {
+                _notches[i][posn] = rotor.hasNotchAt(posn);
+            }
+        }
+        _toNotch = new int[_size];
+        int right = _numRotors - 1;
+        for (int posn = 0; posn < _size; posn++) {
+            _toNotch[posn] = _size;
+            for (int d = 0; d < _size; d++) {
+                if (_notches[right][(posn + d) % _size]) {
+                    _toNotch[posn] = d;
+                    break;
+                }
+            }
+        }
+    }
+
+    /** Return the number of rotor slots I model. */
+    int numRotors() {
+        return _numRotors;
+    }
+
+    /** Return the number of positions of each rotor. */
+    int size() {
+        return _size;
+    }
+
+    /** Return true iff the rotor in SLOT has a ratchet. */
+    boolean rotates(int slot) {
+        return _rotates[slot];
+    }
+
+    /** Return the table whose entry P is true iff the rotor in SLOT is at
+     *  a notch when at P.  It must not be changed. */
+    boolean[] notches(int slot) {
+        return _notches[slot];
+    }
+
+    /** Return true iff the rotor in SLOT is at a notch when at POSN. */
+    boolean atNotch(int slot, int posn) {
+        return _notches[slot][posn];
+    }
+
+    /** Advance POSITIONS by one keypress, exactly as Machine.convert
+     *  advances its rotors before converting a character. */
+    void step(int[] positions) {
+        for (int i = _numRotors - 1; i > _numPawls - 1; i--) {
+            if (_notches[i][positions[i]]) {
+                advance(positions, i - 1);
+            }
+            if (i > 0 && _notches[i - 1][positions[i - 1]]) {
+                advance(positions, i - 1);
+                advance(positions, i - 2);
+            }
+        }
+        advance(positions, _numRotors - 1);
+    }
+
+    /** Advance POSITIONS by one keypress, as step(POSITIONS) does, adding
+     *  the number of rotor movements made to COUNTS[0] and the number of
+     *  double steps to COUNTS[1], counted as Machine.rotorSteps() and
+     *  Machine.doubleSteps() count them. */
+    void countStep(int[] positions, long[] counts) {
+        for (int i = _numRotors - 1; i > _numPawls - 1; i--) {
+            if (_notches[i][positions[i]]) {
+                counts[0] += advance(positions, i - 1);
+            }
+            if (i > 0 && _notches[i - 1][positions[i - 1]]) {
+                counts[0] += advance(positions, i - 1);
+                counts[0] += advance(positions, i - 2);
+                counts[1] += 1;
+            }
+        }
+        counts[0] += advance(positions, _numRotors - 1);
+    }
+
+    /** Advance POSITIONS by STEPS keypresses.  Runs of keypresses in
+     *  which only the rightmost rotor moves are skipped in one addition,
+     *  so the cost depends on the number of notch events in between
+     *  rather than on STEPS. */
+    void step(int[] positions, long steps) {
+        int right = _numRotors - 1;
+        while (steps > 0) {
+            if (!quiet(positions)) {
+                step(positions);
+                steps -= 1;
+                continue;
+            }
+            if (!_rotates[right]) {
+                return;
+            }
+            int idle = _toNotch[positions[right]];
+            if (idle == _size || idle >= steps) {
+                positions[right] = (int) ((positions[right] + steps) % _size);
+                return;
+            }
+            positions[right] = (positions[right] + idle) % _size;
+            steps -= idle;
+            step(positions);
+            steps -= 1;
+        }
+    }
+
+    /** Return true iff no rotor left of the rightmost one in POSITIONS
+     *  is at a notch, so that the next keypress can only move other
+     *  rotors if the rightmost rotor is at a notch. */
+    private boolean quiet(int[] positions) {
+        for (int i = Math.max(_numPawls - 1, 0); i < _numRotors - 1; i++) {
+            if (_notches[i][positions[i]]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return the state reached from START after STEPS keypresses,
+     *  using ORBIT (as returned by orbit(START, ...), or null if unknown)
+     *  to skip whole periods. */
+    int[] seek(int[] start, long steps, long[] orbit) {
+        if (orbit != null && steps > orbit[0]) {
+            steps = orbit[0] + (steps - orbit[0]) % orbit[1];
+        }
+        int[] positions = start.clone();
+        step(positions, steps);
+        return positions;
+    }
+
+    /** Advance the rotor in SLOT of POSITIONS, if it rotates.  Return
+     *  the number of rotors moved (0 or 1). */
+    private int advance(int[] positions, int slot) {
+        if (slot >= 0 && _rotates[slot]) {
+            int next = positions[slot] + 1;
+            positions[slot] = next == _size ? 0 : next;
+            return 1;
+        }
+        return 0;
+    }
+
+    /** Return the orbit of START under step() as a two-element array
+     *  {MU, LAMBDA}: the states reached from START repeat with period
+     *  LAMBDA from step MU onwards.  Returns null if MU + LAMBDA would
+     *  exceed LIMIT. */
+    long[] orbit(int[] start, long limit) {
+        int[] tortoise = start.clone();
+        int[] hare = start.clone();
+        step(hare);
+        long power = 1, lambda = 1, steps = 1;
+        while (!Arrays.equals(tortoise, hare)) {
+            if (power == lambda) {
+                System.arraycopy(hare, 0, tortoise, 0, hare.length);
+                power *= 2;
+                lambda = 0;
+            }
+            step(hare);
+            lambda += 1;
+            steps += 1;
+            if (lambda > limit || steps > 4 * limit) {
+                return null;
+            }
+        }
+        System.arraycopy(start, 0, tortoise, 0, start.length);
+        System.arraycopy(start, 0, hare, 0, start.length);
+        for (long i = 0; i < lambda; i++) {
+            step(hare);
+        }
+        long mu = 0;
+        while (!Arrays.equals(tortoise, hare)) {
+            step(tortoise);
+            step(hare);
+            mu += 1;
+            if (mu + lambda > limit) {
+                return null;
+            }
+        }
+        return new long[] { mu, lambda };
+    }
+
+    /** Number of rotor slots. */
+    private final int _numRotors;
+
+    /** Number of pawls. */
+    private final int _numPawls;
+
+    /** Number of positions of each rotor. */
+    private final int _size;
+
+    /** True for each slot whose rotor has a ratchet. */
+    private final boolean[] _rotates;
+
+    /** _notches[S][P] is true iff the rotor in slot S is at a notch
+     *  when at position P. */
+    private final boolean[][] _notches;
+
+    /** _toNotch[P] is the number of keypresses before the rightmost
+     *  rotor, now at P, is at a notch, or size() if it has none. */
+    private final int[] _toNotch;
+
+}
@@ -13,7 +13,14 @@ public class UnitTest {
     /** Run the JUnit tests in this package. Add xxxTest.class entries to
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
-        textui.runClasses(PermutationTest.class, MovingRotorTest.class);
+        textui.runClasses(PermutationTest.class, MovingRotorTest.class,
+                          MachineTest.class, ChannelReaderTest.class,
+                          ServerTest.class, ConfigParserTest.class,
+                          SessionEngineTest.class, BombeTest.class,
+                          HillClimbTest.class, PositionKernelTest.class,
+                          BatchTest.class, MetricsTest.class,
+                          CatalogueTest.class, CodePointAlphabetTest.class,
+                          MainTest.class);
     }
 
     @Test
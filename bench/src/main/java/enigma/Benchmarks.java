@@ -0,0 +1,43 @@
+package enigma;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/** Entry point of the benchmark jar.  It takes the same arguments as
+ *  JMH's own launcher, but unless told otherwise runs every benchmark
+ *  with the GC profiler and writes its results as JSON, so that each run
+ *  records allocation rates alongside throughput.
+ *  @author Areeb Khalfay
+ */
+public final class Benchmarks {
+
+    /** Not instantiable. */
+    private Benchmarks() {
+    }
+
+    /** Run the benchmarks selected by ARGS, a JMH command line.  The GC
+     *  profiler is added unless ARGS name profilers (-prof), and results
+     *  are written as JSON unless ARGS choose a format (-rf). */
+    public static void main(String... args) throws Exception {
+        CommandLineOptions command = new CommandLineOptions(args);
+        if (command.shouldHelp() || command.shouldList()
+            || command.shouldListWithParams() || command.shouldListProfilers()
+            || command.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(command);
+        if (command.getProfilers().isEmpty()) {
+            options.addProfiler(GCProfiler.class);
+        }
+        if (!command.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        new Runner(options.build()).run();
+    }
+
+}
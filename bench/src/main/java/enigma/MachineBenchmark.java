@@ -0,0 +1,66 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Throughput of Machine.convert on single characters and on messages,
+ *  with the naval machine in its standard settings.
+ *  @author Areeb Khalfay
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MachineBenchmark {
+
+    /** Length of the message converted by convertString. */
+    static final int MESSAGE_LENGTH = 4096;
+
+    /** Size of the keystream table budget; 0 uses the normal path. */
+    @Param({ "0", "16777216" })
+    public long keystreamBudget;
+
+    /** The machine measured. */
+    private Machine _machine;
+
+    /** The message converted by convertString. */
+    private String _message;
+
+    /** Next input index. */
+    private int _next;
+
+    /** Build the machine and message. */
+    @Setup
+    public void setUp() {
+        _machine = Naval.machine();
+        _machine.setKeystreamBudget(keystreamBudget);
+        _message = Naval.message(MESSAGE_LENGTH, true);
+    }
+
+    @Benchmark
+    public int convertInt() {
+        _next = _next == 25 ? 0 : _next + 1;
+        return _machine.convert(_next);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGE_LENGTH)
+    public String convertString() {
+        return _machine.convert(_message);
+    }
+
+}
@@ -0,0 +1,79 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Runs per second of Main reading the naval configuration and
+ *  converting an input file of message lines end to end, writing to an
+ *  output file.
+ *  @author Areeb Khalfay
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MainBenchmark {
+
+    /** Number of message lines in the input. */
+    @Param({ "10", "10000" })
+    public int lines;
+
+    /** Directory holding the configuration, input and output. */
+    private Path _dir;
+
+    /** Command-line arguments of Main. */
+    private String[] _args;
+
+    /** Write the configuration and input files. */
+    @Setup
+    public void setUp() throws IOException {
+        _dir = Files.createTempDirectory("enigma-bench");
+        Path config = _dir.resolve("naval.conf");
+        Path input = _dir.resolve("naval.inp");
+        Files.write(config, Naval.config().getBytes(StandardCharsets.UTF_8));
+        StringBuilder text = new StringBuilder("* B Beta III IV I AXLE ")
+            .append(Naval.PLUGBOARD).append('\n');
+        String line = Naval.message(60, true);
+        for (int i = 0; i < lines; i += 1) {
+            text.append(line).append('\n');
+        }
+        Files.write(input, text.toString().getBytes(StandardCharsets.UTF_8));
+        _args = new String[] {
+            config.toString(), input.toString(),
+            _dir.resolve("naval.out").toString()
+        };
+    }
+
+    /** Remove the files written by setUp and by Main. */
+    @TearDown
+    public void tearDown() throws IOException {
+        for (String name : _args) {
+            Files.deleteIfExists(Path.of(name));
+        }
+        Files.deleteIfExists(_dir);
+    }
+
+    @Benchmark
+    public void process() {
+        new Main(_args).process();
+    }
+
+}
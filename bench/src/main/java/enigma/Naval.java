@@ -0,0 +1,93 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/** The naval rotors of TestUtils.NAVALA, assembled for benchmarking.
+ *  @author Areeb Khalfay
+ */
+final class Naval {
+
+    /** Not instantiable. */
+    private Naval() {
+    }
+
+    /** Names of the moving naval rotors. */
+    static final String[] MOVING = {
+        "I", "II", "III", "IV", "V", "VI", "VII", "VIII"
+    };
+
+    /** Notches of the moving naval rotors, as in a configuration file. */
+    static final String[] NOTCHES = {
+        "MQ", "ME", "MV", "MJ", "MZ", "MZM", "MZM", "MZM"
+    };
+
+    /** Rotors inserted by the standard settings. */
+    static final String[] ROTORS = { "B", "Beta", "III", "IV", "I" };
+
+    /** Initial positions of the standard settings. */
+    static final String SETTING = "AXLE";
+
+    /** Plugboard of the standard settings. */
+    static final String PLUGBOARD = "(HQ) (EX) (IP) (TR) (BY)";
+
+    /** Return the permutation of the naval rotor NAME. */
+    static Permutation permutation(String name) {
+        return new Permutation(TestUtils.NAVALA.get(name), TestUtils.UPPER);
+    }
+
+    /** Return every naval rotor. */
+    static ArrayList<Rotor> rotors() {
+        ArrayList<Rotor> all = new ArrayList<>();
+        for (int i = 0; i < MOVING.length; i += 1) {
+            all.add(new MovingRotor(MOVING[i], permutation(MOVING[i]),
+                                    NOTCHES[i]));
+        }
+        all.add(new FixedRotor("Beta", permutation("Beta")));
+        all.add(new FixedRotor("Gamma", permutation("Gamma")));
+        all.add(new Reflector("B", permutation("B")));
+        all.add(new Reflector("C", permutation("C")));
+        return all;
+    }
+
+    /** Return a 5-rotor, 3-pawl naval machine in the standard settings. */
+    static Machine machine() {
+        Machine mach = new Machine(TestUtils.UPPER, 5, 3, rotors());
+        mach.insertRotors(ROTORS);
+        mach.setRotors(SETTING);
+        mach.setPlugboard(new Permutation(PLUGBOARD, TestUtils.UPPER));
+        return mach;
+    }
+
+    /** Return LEN pseudo-random upper-case letters, with a space after
+     *  every fifth when SPACED. */
+    static String message(int len, boolean spaced) {
+        Random random = new Random(1);
+        StringBuilder msg = new StringBuilder();
+        for (int i = 0; i < len; i += 1) {
+            if (spaced && i % 6 == 5) {
+                msg.append(' ');
+            } else {
+                msg.append((char) ('A' + random.nextInt(26)));
+            }
+        }
+        return msg.toString();
+    }
+
+    /** The naval configuration file, in the format read by Main. */
+    static String config() {
+        StringBuilder config = new StringBuilder("A-Z\n5 3\n");
+        for (int i = 0; i < MOVING.length; i += 1) {
+            config.append(MOVING[i]).append(' ').append(NOTCHES[i])
+                .append(' ').append(TestUtils.NAVALA.get(MOVING[i]))
+                .append('\n');
+        }
+        config.append("Beta N ").append(TestUtils.NAVALA.get("Beta"))
+            .append("\nGamma N ").append(TestUtils.NAVALA.get("Gamma"))
+            .append("\nB R ").append(TestUtils.NAVALA.get("B"))
+            .append("\nC R ").append(TestUtils.NAVALA.get("C"))
+            .append('\n');
+        return config.toString();
+    }
+
+}
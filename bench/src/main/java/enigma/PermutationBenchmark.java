@@ -0,0 +1,66 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Throughput of Permutation.permute and Permutation.invert on the naval
+ *  rotor I, on indices and on characters.
+ *  @author Areeb Khalfay
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PermutationBenchmark {
+
+    /** The permutation measured. */
+    private Permutation _perm;
+
+    /** Next input index. */
+    private int _next;
+
+    /** Build the permutation. */
+    @Setup
+    public void setUp() {
+        _perm = Naval.permutation("I");
+    }
+
+    /** Return the next input index, cycling through the alphabet. */
+    private int next() {
+        _next = _next == 25 ? 0 : _next + 1;
+        return _next;
+    }
+
+    @Benchmark
+    public int permuteInt() {
+        return _perm.permute(next());
+    }
+
+    @Benchmark
+    public int invertInt() {
+        return _perm.invert(next());
+    }
+
+    @Benchmark
+    public char permuteChar() {
+        return _perm.permute((char) ('A' + next()));
+    }
+
+    @Benchmark
+    public char invertChar() {
+        return _perm.invert((char) ('A' + next()));
+    }
+
+}
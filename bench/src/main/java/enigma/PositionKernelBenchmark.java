@@ -0,0 +1,79 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Start positions evaluated per second against a 200-letter ciphertext
+ *  by the scalar PositionKernel and by the fastest kernel available
+ *  (VectorPositionKernel, since the vector module is added to the forked
+ *  JVMs).
+ *  @author Areeb Khalfay
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+public class PositionKernelBenchmark {
+
+    /** Start positions evaluated by each invocation. */
+    private static final int BATCH = 1024;
+
+    /** The scalar kernel. */
+    private PositionKernel _scalar;
+
+    /** The fastest kernel. */
+    private PositionKernel _fastest;
+
+    /** Coincidence counts. */
+    private long[] _out = new long[BATCH];
+
+    /** First start position of the next batch. */
+    private int _next;
+
+    /** Build the kernels. */
+    @Setup
+    public void setUp() {
+        Machine machine = Naval.machine();
+        String msg = Naval.message(200, false);
+        int[] cipher = new int[msg.length()];
+        for (int i = 0; i < cipher.length; i += 1) {
+            cipher[i] = msg.charAt(i) - 'A';
+        }
+        _scalar = new PositionKernel(machine.spec(), cipher);
+        _fastest = PositionKernel.kernel(machine.spec(), cipher);
+    }
+
+    /** Return the first start position of the next batch. */
+    private int next() {
+        _next = (_next + BATCH) % (26 * 26 * 26 * 26 - BATCH);
+        return _next;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long[] scalar() {
+        _scalar.coincidences(next(), BATCH, _out);
+        return _out;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long[] fastest() {
+        _fastest.coincidences(next(), BATCH, _out);
+        return _out;
+    }
+
+}
@@ -0,0 +1,66 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Throughput of Rotor.convertForward, Rotor.convertBackward and
+ *  MovingRotor.atNotch on the naval rotor VI, which has two notches.
+ *  @author Areeb Khalfay
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RotorBenchmark {
+
+    /** The rotor measured. */
+    private MovingRotor _rotor;
+
+    /** Next input index. */
+    private int _next;
+
+    /** Build the rotor and its tables. */
+    @Setup
+    public void setUp() {
+        _rotor = new MovingRotor("VI", Naval.permutation("VI"), "MZM");
+        _rotor.convertForward(0);
+        _rotor.convertBackward(0);
+    }
+
+    /** Return the next input index, cycling through the alphabet. */
+    private int next() {
+        _next = _next == 25 ? 0 : _next + 1;
+        return _next;
+    }
+
+    @Benchmark
+    public int convertForward() {
+        _rotor.advance();
+        return _rotor.convertForward(next());
+    }
+
+    @Benchmark
+    public int convertBackward() {
+        _rotor.advance();
+        return _rotor.convertBackward(next());
+    }
+
+    @Benchmark
+    public boolean atNotch() {
+        _rotor.advance();
+        return _rotor.atNotch();
+    }
+
+}
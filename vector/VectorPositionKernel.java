@@ -0,0 +1,262 @@
+package enigma;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/** A PositionKernel that evaluates as many start positions at once as
+ *  an IntVector has lanes, each lane following one start position.  The
+ *  rotors of all lanes are stepped together with masked additions, the
+ *  signal path is followed through the rotors' conversion tables with
+ *  gathers (a rotor next to the reflector that never moves is merged with
+ *  it into one table, saving two gathers per letter), and letter counts
+ *  are kept per lane, so the results are
+ *  exactly those of PositionKernel.  Uses the incubating vector module
+ *  (jdk.incubator.vector), which must be added when compiling and
+ *  running; PositionKernel.kernel() only creates one when it is.
+ *  @author Areeb Khalfay
+ */
+final class VectorPositionKernel extends PositionKernel {
+
+    /** A kernel for the rotors and plugboard of SPEC and the ciphertext
+     *  CIPHER, given as indices in SPEC's alphabet. */
+    VectorPositionKernel(MachineSpec spec, int[] cipher) {
+        super(spec, cipher);
+        _cipher = cipher;
+        _size = spec.alphabet().size();
+        _numRotors = spec.numRotors();
+        _numPawls = spec.numPawls();
+        _lanes = SPECIES.length();
+        _forward = new int[_numRotors][];
+        _backward = new int[_numRotors][];
+        _notches = new int[_numRotors][];
+        _rotates = new boolean[_numRotors];
+        Stepping stepping = spec.stepping();
+        for (int slot = 0; slot < _numRotors; slot += 1) {
+            _forward[slot] = spec.forwardTable(slot);
+            if (slot > 0) {
+                _backward[slot] = spec.backwardTable(slot);
+            }
+            _rotates[slot] = stepping.rotates(slot);
+            int notches = 0;
+            for (int posn = 0; posn < _size; posn += 1) {
+                if (stepping.atNotch(slot, posn)) {
+                    notches += 1;
+                }
+            }
+            _notches[slot] = new int[notches];
+            notches = 0;
+            for (int posn = 0; posn < _size; posn += 1) {
+                if (stepping.atNotch(slot, posn)) {
+                    _notches[slot][notches++] = posn;
+                }
+            }
+        }
+        _fixed = !_rotates[1];
+        if (_fixed) {
+            _core = new int[_size * _size];
+            for (int posn = 0; posn < _size; posn += 1) {
+                for (int c = 0; c < _size; c += 1) {
+                    int k = posn * _size + c;
+                    int p = _forward[0][_forward[1][k]];
+                    _core[k] = _backward[1][posn * _size + p];
+                }
+            }
+        } else {
+            _core = null;
+        }
+        _plugboard = spec.plugboardTable();
+        _index = new int[_lanes];
+        _digits = new int[_numRotors][_lanes];
+        _counts = new int[_size * _lanes];
+        _same = new int[_lanes];
+        int[] lane = new int[_lanes];
+        for (int k = 0; k < _lanes; k += 1) {
+            lane[k] = k;
+        }
+        _lane = IntVector.fromArray(SPECIES, lane, 0);
+    }
+
+    @Override
+    int lanes() {
+        return _lanes;
+    }
+
+    @Override
+    void coincidences(int from, int count, long[] out) {
+        int k = 0;
+        for (; k + _lanes <= count; k += _lanes) {
+            evaluate(from + k, out, k);
+        }
+        int[] positions = new int[_numRotors];
+        for (; k < count; k += 1) {
+            decode(from + k, positions);
+            out[k] = coincidences(positions);
+        }
+    }
+
+    /** Set OUT[OFF + K] to the number of coincidences of the decryption
+     *  from the start position numbered FIRST + K, for each lane K. */
+    private void evaluate(int first, long[] out, int off) {
+        int[] positions = new int[_numRotors];
+        for (int k = 0; k < _lanes; k += 1) {
+            decode(first + k, positions);
+            for (int slot = 0; slot < _numRotors; slot += 1) {
+                _digits[slot][k] = positions[slot];
+            }
+        }
+        int[][] pos = _digits;
+        for (int i = 0; i < _counts.length; i += 1) {
+            _counts[i] = 0;
+        }
+        IntVector same = IntVector.zero(SPECIES);
+        for (int i = 0; i < _cipher.length; i += 1) {
+            step(pos);
+            int c = _cipher[i];
+            if (_plugboard != null) {
+                c = _plugboard[c];
+            }
+            IntVector p = IntVector.broadcast(SPECIES, c);
+            int inner = _fixed ? 1 : 0;
+            for (int slot = _numRotors - 1; slot > inner; slot -= 1) {
+                p = gather(_forward[slot], offsets(pos[slot]).add(p));
+            }
+            if (_fixed) {
+                p = gather(_core, offsets(pos[1]).add(p));
+            } else {
+                p = gather(_forward[0], p);
+            }
+            for (int slot = inner + 1; slot < _numRotors; slot += 1) {
+                p = gather(_backward[slot], offsets(pos[slot]).add(p));
+            }
+            if (_plugboard != null) {
+                p = gather(_plugboard, p);
+            }
+            IntVector seen = gather(_counts, p.mul(_lanes).add(_lane));
+            same = same.add(seen);
+            seen.add(1).intoArray(_counts, 0, _index, 0);
+        }
+        same.intoArray(_same, 0);
+        for (int k = 0; k < _lanes; k += 1) {
+            out[off + k] = 2L * _same[k];
+        }
+    }
+
+    /** Advance the rotor positions POS of every lane by one keypress, as
+     *  Stepping.step does for one.  POS[S][K] is the position of the rotor
+     *  in slot S in lane K. */
+    private void step(int[][] pos) {
+        for (int i = _numRotors - 1; i > _numPawls - 1; i -= 1) {
+            if (i > 0 && _rotates[i - 1] && _notches[i].length > 0) {
+                advance(pos[i - 1], atNotch(i, pos[i]));
+            }
+            if (i > 0 && _notches[i - 1].length > 0) {
+                VectorMask<Integer> notch = atNotch(i - 1, pos[i - 1]);
+                if (_rotates[i - 1]) {
+                    advance(pos[i - 1], notch);
+                }
+                if (i > 1 && _rotates[i - 2]) {
+                    advance(pos[i - 2], notch);
+                }
+            }
+        }
+        int right = _numRotors - 1;
+        if (_rotates[right]) {
+            advance(pos[right], SPECIES.maskAll(true));
+        }
+    }
+
+    /** Return the lanes in which the rotor in SLOT is at a notch when at
+     *  the positions POSN. */
+    private VectorMask<Integer> atNotch(int slot, int[] posn) {
+        IntVector v = IntVector.fromArray(SPECIES, posn, 0);
+        int[] notches = _notches[slot];
+        VectorMask<Integer> mask = v.compare(VectorOperators.EQ, notches[0]);
+        for (int k = 1; k < notches.length; k += 1) {
+            mask = mask.or(v.compare(VectorOperators.EQ, notches[k]));
+        }
+        return mask;
+    }
+
+    /** Advance the positions POSN by one position in the lanes of
+     *  MASK. */
+    private void advance(int[] posn, VectorMask<Integer> mask) {
+        IntVector next = IntVector.fromArray(SPECIES, posn, 0).add(1, mask);
+        next.blend(0, next.compare(VectorOperators.EQ, _size))
+            .intoArray(posn, 0);
+    }
+
+    /** Return the start of the row of a conversion table for each of the
+     *  positions POSN. */
+    private IntVector offsets(int[] posn) {
+        return IntVector.fromArray(SPECIES, posn, 0).mul(_size);
+    }
+
+    /** Return the entries of TABLE at INDEX, leaving INDEX in _index. */
+    private IntVector gather(int[] table, IntVector index) {
+        index.intoArray(_index, 0);
+        return IntVector.fromArray(SPECIES, table, 0, _index, 0);
+    }
+
+    /** The vector shape used. */
+    private static final VectorSpecies<Integer> SPECIES =
+        IntVector.SPECIES_PREFERRED;
+
+    /** The ciphertext. */
+    private final int[] _cipher;
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** Number of rotor slots. */
+    private final int _numRotors;
+
+    /** Number of pawls. */
+    private final int _numPawls;
+
+    /** Number of lanes. */
+    private final int _lanes;
+
+    /** Forward conversion table of each slot. */
+    private final int[][] _forward;
+
+    /** Backward conversion table of each slot but the reflector's. */
+    private final int[][] _backward;
+
+    /** _notches[S] holds the positions at which the rotor in slot S is at
+     *  a notch. */
+    private final int[][] _notches;
+
+    /** True for each slot whose rotor has a ratchet. */
+    private final boolean[] _rotates;
+
+    /** True iff the rotor in slot 1 never moves, in which case _core is
+     *  used in place of it and the reflector. */
+    private final boolean _fixed;
+
+    /** The path through the rotor in slot 1, the reflector, and back,
+     *  indexed by the position of slot 1 * alphabet size + input; null
+     *  unless _fixed. */
+    private final int[] _core;
+
+    /** The plugboard as a table, or null. */
+    private final int[] _plugboard;
+
+    /** Indices of the last gather. */
+    private final int[] _index;
+
+    /** Position of each slot in each lane. */
+    private final int[][] _digits;
+
+    /** _counts[C * lanes() + K] is the number of times letter C has been
+     *  seen in lane K. */
+    private final int[] _counts;
+
+    /** Coincidences of each lane, on the way out. */
+    private final int[] _same;
+
+    /** The number of each lane. */
+    private final IntVector _lane;
+
+}